@@ -1,22 +1,22 @@
 package it.unitn.ds1;
 
 import akka.actor.ActorRef;
-import akka.actor.AbstractActor;
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.Cancellable;
 import akka.actor.InvalidMessageException;
 import akka.actor.Props;
-import scala.concurrent.duration.Duration;
-
-import java.util.concurrent.TimeUnit;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 
 import it.unitn.ds1.Message.*;
+import it.unitn.ds1.RequestTable.Request;
 
-public class Cache extends AbstractActor{
+public class Cache extends AbstractActorWithTimers{
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
@@ -28,9 +28,45 @@ public class Cache extends AbstractActor{
 
     private final TYPE type_of_cache;
 
-    private Map<Integer, Integer> data = new HashMap<>();
-
-    private Map<Integer, Integer> tmpWriteData = new HashMap<>();
+    // heap (IntIntMap) or off-heap (OffHeapIntIntStore) storage, see setStorage
+    private IntIntStore data = new IntIntMap();
+
+    // maximum number of keys in data, 0 means unbounded
+    private int capacity = 0;
+
+    // every insertion, access and removal on data goes through the eviction policy
+    private EvictionPolicy evictionPolicy = new LRUEvictionPolicy();
+
+    // optional W-TinyLFU admission filter, null if disabled
+    // when enabled, the eviction policy tracks only the keys of the main area, not the ones in the window
+    private TinyLfuAdmission admission = null;
+
+    // statistics on read requests, to evaluate the hit ratio
+    private long readHits = 0;
+    private long readMisses = 0;
+
+    // expiry of the cached keys
+    // default time to live of the keys (seconds), 0 means that keys never expire
+    private int ttl = 0;
+    // expirations are int milliseconds compared with wraparound, which is safe for differences below ~24 days:
+    // longer ttls are clamped to MAX_TTL seconds (~12 days), leaving room for the sweep to find the expired keys
+    public static final int MAX_TTL = Integer.MAX_VALUE / 1000 / 2;
+    // key -> expiration time (ms since expiryEpoch), only for keys that can expire
+    private final IntIntMap expiries = new IntIntMap();
+    private final long expiryEpoch = System.currentTimeMillis();
+    private int expirySweepInterval = 0;
+    // each tick the sweep visits 1/EXPIRY_SWEEP_TICKS of the slots of expiries (at least EXPIRY_SWEEP_SLOTS),
+    // starting from the cursor, so that a full pass takes at most EXPIRY_SWEEP_TICKS ticks whatever the size
+    private static final int EXPIRY_SWEEP_TICKS = 16;
+    private static final int EXPIRY_SWEEP_SLOTS = 64;
+    private int expirySweepCursor = 0;
+    private int[] expiredKeys = new int[EXPIRY_SWEEP_SLOTS + 1];
+    private int expiredCount = 0;
+
+    // keys that are not stored in the database, with their own ttl and capacity
+    private NegativeCache negativeCache = new NegativeCache(0, 0);
+
+    private IntIntMap tmpWriteData = new IntIntMap();
 
     // for critical write, l1 caches
     private Map<Integer, Set<ActorRef>> childrenToAcceptWriteByKey = new HashMap<>();
@@ -38,82 +74,46 @@ public class Cache extends AbstractActor{
     private Map<Integer, Set<ActorRef>> childrenToConfirmWriteByKey = new HashMap<>();
     private Map<Integer, Set<ActorRef>> childrenConfirmedWriteByKey = new HashMap<>();
 
-    public class Request {
-
-        private final long requestId;
-        private final int key;
-        private int value;
-        private final String type;
-        private final String requesterType;
-        private ActorRef requester; //either a client or a cache???
-        private boolean isFulfilled = false;
-
-        public Request(String type, String requesterType, ActorRef requester, int key, long requestId) {
-            this.type = type;
-            this.requesterType = requesterType;
-            this.requester = requester;
-            this.key = key;
-            this.value = -1; // -1 is set for the read requests
-            this.requestId = requestId;
-        }
-
-        long getRequestId() {
-            return requestId;
-        }
-
-        int getKey() {
-            return key;
-        }
-
-        int getValue() {
-            return value;
-        }
-
-        String getType() {
-            return type;
-        }
-
-        String getRequesterType() {
-            return requesterType;
-        }
-
-        ActorRef getRequester() {
-            return requester;
-        }
-
-        public boolean isFulfilled() {
-            return isFulfilled;
-        }
-
-        void setValue (int value) {
-            this.value = value;
-        }
-
-        void setFulfilled () {
-            this.isFulfilled = true;
-        }
-
-        //toString method for debugging
-        @Override
-        public String toString() {
-            return "Request{" +
-                    "requestId=" + requestId +
-                    ", key=" + key +
-                    ", value=" + value +
-                    ", type='" + type + '\'' +
-                    ", requesterType='" + requesterType + '\'' +
-                    ", requester=" + requester +
-                    ", isFulfilled=" + isFulfilled +
-                    '}';
-        }
-
-    }
-
-    // map of request where the key is the id of the request and the value is the request itself
+    // table of the requests in progress, where the key is the id of the request
     // assumption: a cache can receive requests from different clients at the same time
     // therefore we CANNOT use only a binary switch to check if a request is being processed by the cache
     // we need a map or something similar to keep track of all the requests
-    private Map<Long, Request> requests = new HashMap<>();
+    // requests are removed once answered, see RequestTable
+    private final RequestTable requests;
+
+    // parent that stopped answering (L2 caches only), its pending requests are retried on the new parent
+    private ActorRef failedParent = null;
+    // L1 parent the L2 cache was created with: the database or the L1 caches adopting the L2 cache after a failover
+    // are only temporary parents, the L2 cache goes back to it once it recovers
+    private ActorRef homeParent = null;
+
+    // sibling failover (L2 caches only): an orphaned L2 cache asks the L1 caches for their load and connects to
+    // the least loaded one answering within siblingLoadTimeout milliseconds, or to the database if none answers
+    private final Set<ActorRef> l1Caches = new HashSet<>();
+    private boolean siblingFailover = false;
+    private int siblingLoadTimeout = 0;
+    // L1 caches that told their load during the selection of the new parent, null when no selection is in progress
+    private Map<ActorRef, LoadResponseMsg> siblingLoads = null;
+
+    // heartbeats sent to the parent every heartbeatInterval milliseconds, 0 means no heartbeats
+    // the acks feed the failure detector of the parent, a L2 cache suspecting its L1 parent
+    // connects to the database without waiting for a request to time out
+    private int heartbeatInterval = 0;
+    private PhiAccrualFailureDetector parentDetector = null;
+    private boolean parentSuspected = false;
+    // the tick is sent by the scheduler, not by a timer: a timer wraps it, so the PriorityMailbox would see
+    // a CLIENT message and a backlog of requests would delay the heartbeats
+    private Cancellable heartbeatTick = null;
+    // a tick handled more than LATE_TICK_FACTOR intervals after the previous one comes from a busy actor
+    private static final int LATE_TICK_FACTOR = 2;
+    private long lastHeartbeatTick = 0;
+
+    // single-flight of read misses: only the first read of a missing key (leader) is sent to the parent
+    // the following reads of the same key (followers) are parked and answered with the response of the leader
+    // key -> requestId of the leader
+    private final Map<Integer, Long> inFlightReads = new HashMap<>();
+    // requestId of the leader -> read requests of the followers
+    private final Map<Long, List<ReadRequestMsg>> parkedReads = new HashMap<>();
 
     // structures used ONLY by L1 caches
     private boolean isRecovering = false;
@@ -135,7 +135,36 @@ public class Cache extends AbstractActor{
 
     private final HashMap<String, Integer> timeouts = new HashMap<>();
 
-    private Random rnd = new Random();
+    // timeouts of the requests forwarded to the parent, adapted to the measured latency
+    private final LatencyEstimator rtt = new LatencyEstimator();
+
+    // hedged reads (L2 caches only): a read miss late on the L1 parent is sent also to the database
+    private static final double HEDGE_QUANTILE = 0.95;
+    private static final int MAX_HEDGED_READS = 1024;
+    private boolean hedgeReads = false;
+    // requestId -> hedged read, until both responses arrive (the oldest are dropped, the L1 parent may never answer)
+    private final Map<Long, HedgedRead> hedgedReads = new LinkedHashMap<Long, HedgedRead>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, HedgedRead> eldest) {
+            return size() > MAX_HEDGED_READS;
+        }
+    };
+
+    private static final class HedgedRead {
+        // time the read was sent to the L1 parent
+        private final long sentAt;
+        // the L1 parent answered first
+        private boolean parentAnswered = false;
+        // the database shed the hedge, only the L1 parent answers
+        private boolean lost = false;
+
+        private HedgedRead(long sentAt) {
+            this.sentAt = sentAt;
+        }
+    }
+
+    // simulated network latency of the incoming messages
+    private final LatencyInjector latency;
 
     private String classString = String.valueOf(getClass());
 
@@ -144,10 +173,12 @@ public class Cache extends AbstractActor{
     public Cache(int id,
                  String type,
                  ActorRef parent,
-                 List<TimeoutConfiguration> timeouts) throws IOException {
+                 CacheConfiguration configuration,
+                 List<LatencyConfiguration> latencies) throws IOException {
 
         this.id = id;
         this.parent = parent;
+        this.latency = new LatencyInjector(getContext(), latencies, this::linkOf);
 
         if (type.equals("L1")){
             this.type_of_cache = TYPE.L1;
@@ -157,7 +188,15 @@ public class Cache extends AbstractActor{
         } else {
             throw new IllegalArgumentException("Wrong type of cache requested!");
         }
-        setTimeouts(timeouts);
+        setTimeouts(configuration.getTimeouts());
+        setCapacity(configuration.getCapacity(), configuration.getEvictionPolicy());
+        setAdmissionFilter(configuration.getAdmissionFilter());
+        setStorage(configuration.getStorage());
+        setExpiry(configuration.getTtl(), configuration.getExpirySweepInterval());
+        setNegativeCache(configuration.getNegativeTtl(), configuration.getNegativeCapacity());
+        setHeartbeat(configuration.getHeartbeatInterval(), configuration.getPhiThreshold(), configuration.getAcceptableHeartbeatPause());
+        this.hedgeReads = configuration.getHedgeReads();
+        this.requests = new RequestTable(configuration.getStaleRequestAge());
 
         //System.out.println("["+this.type_of_cache+" Cache " + this.id + "] Cache initialized!");
         log.info("[{} CACHE {}] Cache initialized!", this.type_of_cache.toString(), String.valueOf(this.id));
@@ -167,9 +206,12 @@ public class Cache extends AbstractActor{
                  String type,
                  ActorRef parent,
                  ActorRef database,
-                 List<TimeoutConfiguration> timeouts) throws IOException {
+                 Set<ActorRef> l1Caches,
+                 CacheConfiguration configuration,
+                 List<LatencyConfiguration> latencies) throws IOException {
 
         this.id = id;
+        this.latency = new LatencyInjector(getContext(), latencies, this::linkOf);
 
         if (type.equals("L1")){
             this.type_of_cache = TYPE.L1;
@@ -180,19 +222,38 @@ public class Cache extends AbstractActor{
         }
 
         setParent(parent);
+        this.homeParent = parent;
         this.database = database;
-        setTimeouts(timeouts);
+        this.l1Caches.addAll(l1Caches);
+        setTimeouts(configuration.getTimeouts());
+        setCapacity(configuration.getCapacity(), configuration.getEvictionPolicy());
+        setAdmissionFilter(configuration.getAdmissionFilter());
+        setStorage(configuration.getStorage());
+        setExpiry(configuration.getTtl(), configuration.getExpirySweepInterval());
+        setNegativeCache(configuration.getNegativeTtl(), configuration.getNegativeCapacity());
+        setHeartbeat(configuration.getHeartbeatInterval(), configuration.getPhiThreshold(), configuration.getAcceptableHeartbeatPause());
+        this.hedgeReads = configuration.getHedgeReads();
+        this.siblingFailover = configuration.getSiblingFailover();
+        this.siblingLoadTimeout = configuration.getSiblingLoadTimeout();
+        this.requests = new RequestTable(configuration.getStaleRequestAge());
 
         //System.out.println("["+this.type_of_cache+" Cache " + this.id + "] Cache initialized!");
         log.info("[{} CACHE {}] Cache initialized!", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
-    static public Props props(int id, String type, ActorRef parent, List<TimeoutConfiguration> timeouts) {
-        return Props.create(Cache.class, () -> new Cache(id, type, parent, timeouts));
+    // mailbox of the caches of a level (L1 or L2) in the configuration of the actor system, see PriorityMailbox
+    public static String mailboxId(String type) {
+        return type.toLowerCase() + "-mailbox";
     }
 
-    static public Props props(int id, String type, ActorRef parent, ActorRef database, List<TimeoutConfiguration> timeouts) {
-        return Props.create(Cache.class, () -> new Cache(id, type, parent, database, timeouts));
+    static public Props props(int id, String type, ActorRef parent, CacheConfiguration configuration, List<LatencyConfiguration> latencies) {
+        return PriorityMailbox.withMailbox(Props.create(Cache.class, () -> new Cache(id, type, parent, configuration, latencies)), mailboxId(type), configuration.getMailbox(), configuration.getMailboxCapacity());
+    }
+
+    // l1Caches: all the L1 caches of the system, the candidate parents of an orphaned L2 cache
+    static public Props props(int id, String type, ActorRef parent, ActorRef database, Set<ActorRef> l1Caches, CacheConfiguration configuration, List<LatencyConfiguration> latencies) {
+        Set<ActorRef> siblings = new HashSet<>(l1Caches);
+        return PriorityMailbox.withMailbox(Props.create(Cache.class, () -> new Cache(id, type, parent, database, siblings, configuration, latencies)), mailboxId(type), configuration.getMailbox(), configuration.getMailboxCapacity());
     }
 
     private int getID() { return this.id;}
@@ -205,8 +266,14 @@ public class Cache extends AbstractActor{
         this.crashed = true;
         clearData();
         clearRequests();
+        this.rtt.clear();
+        this.hedgedReads.clear();
+        this.siblingLoads = null;
 
         this.tmpWriteData.clear();
+        // pending request timeouts, recovery timeout, expiry sweep and heartbeats
+        getTimers().cancelAll();
+        cancelHeartbeat();
 
         //change the behavior of the actor to the crashed one
         getContext().become(crashed());
@@ -221,24 +288,177 @@ public class Cache extends AbstractActor{
     private void recover() {
         this.crashed = false;
         getContext().become(createReceive());
+        scheduleExpirySweep();
+        scheduleHeartbeat();
         log.info("[{} CACHE {}] Recovery process completed!", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     //----------DATA LOGIC----------
 
+    public void setCapacity(int capacity, String evictionPolicy) {
+        this.capacity = capacity;
+        this.evictionPolicy = EvictionPolicy.create(evictionPolicy);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    // the store is sized on the capacity, so that a bounded cache allocates its slots only once
+    public void setStorage(String storage) {
+        this.data = IntIntStore.create(storage, this.capacity);
+    }
+
+    public void setHeartbeat(int heartbeatInterval, double phiThreshold, int acceptableHeartbeatPause) {
+        this.heartbeatInterval = heartbeatInterval;
+        if (heartbeatInterval > 0) {
+            // the acks are expected every heartbeatInterval, a quarter of it is the minimum jitter assumed
+            this.parentDetector = new PhiAccrualFailureDetector(phiThreshold, heartbeatInterval, acceptableHeartbeatPause, Math.max(1.0, heartbeatInterval / 4.0));
+        }
+    }
+
+    public void setExpiry(int ttl, int expirySweepInterval) {
+        this.ttl = Math.min(ttl, MAX_TTL);
+        this.expirySweepInterval = expirySweepInterval;
+    }
+
+    public void setNegativeCache(int ttl, int capacity) {
+        this.negativeCache = new NegativeCache(Math.min(ttl, MAX_TTL), capacity);
+    }
+
+    // if enabled is null, the admission filter is enabled by default only for L2 caches
+    // the filter needs a bounded cache with room for both the window and the main area
+    public void setAdmissionFilter(Boolean enabled) {
+        boolean isEnabled = (enabled != null) ? enabled : this.type_of_cache == TYPE.L2;
+        if (isEnabled && this.capacity >= 2) {
+            this.admission = new TinyLfuAdmission(this.capacity);
+        } else {
+            this.admission = null;
+        }
+    }
+
     public void addData(int key, int value) {
+        addData(key, value, 0);
+    }
+
+    // ttl in seconds, 0 means the default ttl of the cache
+    // IntIntMap.MISSING can not be stored, it is dropped instead of failing (and restarting) the cache
+    public void addData(int key, int value, int ttl) {
+        if (value == IntIntMap.MISSING) {
+            log.info("[{} CACHE {}] Dropped value {} of key " + key + ", not allowed", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(value));
+            return;
+        }
+        this.negativeCache.invalidate(key);
+
+        if (this.data.containsKey(key)) {
+            this.data.put(key, value);
+            onDataAccess(key);
+            setExpiration(key, ttl);
+            return;
+        }
+
+        if (this.admission != null) {
+            addDataThroughWindow(key, value);
+        } else {
+            // the cache is full, make room for the new key
+            if (this.capacity > 0 && this.data.size() >= this.capacity) {
+                evictData();
+            }
+
+            this.data.put(key, value);
+            this.evictionPolicy.onInsert(key);
+        }
+
+        if (this.data.containsKey(key)) {
+            setExpiration(key, ttl);
+        }
+    }
+
+    // W-TinyLFU: the new key always enters the window, if the window overflows its oldest key
+    // competes with the victim of the main area, and the less frequently requested of the two is dropped
+    private void addDataThroughWindow(int key, int value) {
         this.data.put(key, value);
+        this.admission.addToWindow(key);
+
+        if (!this.admission.isWindowOverflowing()) {
+            return;
+        }
+
+        int candidate = this.admission.pollWindow();
+        int mainCapacity = this.capacity - this.admission.getWindowCapacity();
+
+        if (this.evictionPolicy.size() < mainCapacity) {
+            this.evictionPolicy.onInsert(candidate);
+            return;
+        }
+
+        int victim = this.evictionPolicy.victim();
+        if (this.admission.admit(candidate, victim)) {
+            removeData(victim);
+            this.evictionPolicy.onInsert(candidate);
+            log.info("[{} CACHE {}] Admission filter: key {} admitted, evicted key {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(candidate), String.valueOf(victim));
+        } else {
+            this.data.remove(candidate);
+            this.expiries.remove(candidate);
+            log.info("[{} CACHE {}] Admission filter: key {} rejected in favour of key {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(candidate), String.valueOf(victim));
+        }
+    }
+
+    private void onDataAccess(int key) {
+        if (this.admission != null && this.admission.isInWindow(key)) {
+            this.admission.onWindowAccess(key);
+        } else {
+            this.evictionPolicy.onAccess(key);
+        }
+    }
+
+    // to be called for every read request, so that the admission filter knows the popularity of the keys
+    private void recordReadAccess(int key, boolean hit) {
+        if (hit) {
+            this.readHits++;
+        } else {
+            this.readMisses++;
+        }
+        if (this.admission != null) {
+            this.admission.recordAccess(key);
+        }
+    }
+
+    public double getHitRatio() {
+        long total = this.readHits + this.readMisses;
+        return total == 0 ? 0.0 : (double) this.readHits / total;
     }
 
     public void addData(Map<Integer, Integer> map) {
-        this.data.putAll(map);
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            addData(entry.getKey(), entry.getValue());
+        }
     }
 
+    // overwrite the value only if the key is already cached (write responses and fill messages)
+    // ttl in seconds, 0 means the default ttl of the cache
+    public void updateData(int key, int value, int ttl) {
+        if (value == IntIntMap.MISSING) {
+            log.info("[{} CACHE {}] Dropped value {} of key " + key + ", not allowed", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(value));
+            return;
+        }
+        if (this.data.containsKey(key)) {
+            this.data.put(key, value);
+            onDataAccess(key);
+            setExpiration(key, ttl);
+        }
+    }
+
+    // returns IntIntMap.MISSING if the key is not cached
     public int getData(int key) {
-        return this.data.get(key);
+        int value = this.data.get(key);
+        if (value != IntIntMap.MISSING) {
+            onDataAccess(key);
+        }
+        return value;
     }
 
-    public Map<Integer, Integer> getData() {
+    public IntIntStore getData() {
         return this.data;
     }
 
@@ -246,12 +466,144 @@ public class Cache extends AbstractActor{
         return this.data.containsKey(key);
     }
 
+    public void removeData(int key) {
+        this.expiries.remove(key);
+        if (this.data.remove(key) != IntIntMap.MISSING) {
+            if (this.admission == null || !this.admission.removeFromWindow(key)) {
+                this.evictionPolicy.onRemove(key);
+            }
+        }
+    }
+
+    private void evictData() {
+        int victim = this.evictionPolicy.victim();
+        removeData(victim);
+        log.info("[{} CACHE {}] Cache full (capacity {}), evicted key {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(this.capacity), String.valueOf(victim));
+    }
+
     public void clearData() {
         this.data.clear();
+        this.negativeCache.clear();
+        this.expiries.clear();
+        this.expirySweepCursor = 0;
+        this.evictionPolicy.clear();
+        if (this.admission != null) {
+            this.admission.clear();
+        }
+    }
+
+    // ----------EXPIRY LOGIC----------
+
+    // ms since expiryEpoch, int arithmetic on the difference of two times is safe for ttls below ~24 days
+    private int expiryClock() {
+        return (int) (System.currentTimeMillis() - this.expiryEpoch);
+    }
+
+    private void setExpiration(int key, int ttl) {
+        int seconds = (ttl > 0) ? Math.min(ttl, MAX_TTL) : this.ttl;
+        if (seconds > 0) {
+            int expiration = expiryClock() + seconds * 1000;
+            // the clock wraps: the sentinel can not be stored, one ms later makes no difference
+            if (expiration == IntIntMap.MISSING) {
+                expiration++;
+            }
+            this.expiries.put(key, expiration);
+        } else {
+            this.expiries.remove(key);
+        }
+    }
+
+    private boolean isExpired(int key, int now) {
+        int expiration = this.expiries.get(key);
+        return expiration != IntIntMap.MISSING && now - expiration >= 0;
+    }
+
+    // lazy expiry, checked before serving a key
+    private void expireIfNeeded(int key) {
+        if (isExpired(key, expiryClock())) {
+            removeData(key);
+            log.info("[{} CACHE {}] Key {} expired", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(key));
+        }
+    }
+
+    private void scheduleExpirySweep() {
+        if (this.expirySweepInterval <= 0) {
+            return;
+        }
+        // periodic timer, restarting it (e.g. on recovery) replaces the previous one
+        getTimers().startTimerWithFixedDelay(
+            "expiry_sweep",
+            new ExpirySweepMsg(),
+            Duration.ofSeconds(this.expirySweepInterval)
+        );
     }
 
     public void clearRequests() {
         this.requests.clear();
+        this.inFlightReads.clear();
+        this.parkedReads.clear();
+    }
+
+    // ----------SINGLE-FLIGHT LOGIC----------
+
+    // true if the read has been parked behind a read of the same key already sent to the parent
+    private boolean parkIfInFlight(ReadRequestMsg readRequestMsg) {
+        Long leaderId = this.inFlightReads.get(readRequestMsg.getKey());
+
+        // a retry of the leader itself is forwarded again
+        if (leaderId == null || leaderId == readRequestMsg.getRequestId()) {
+            this.inFlightReads.put(readRequestMsg.getKey(), readRequestMsg.getRequestId());
+            return false;
+        }
+
+        this.parkedReads.computeIfAbsent(leaderId, id -> new ArrayList<>()).add(readRequestMsg);
+        return true;
+    }
+
+    // answers the followers parked behind the leader with requestId, with the same value received for the leader
+    private void answerParkedReads(int key, int value, long requestId) {
+        Long leaderId = this.inFlightReads.get(key);
+        if (leaderId == null || leaderId != requestId) {
+            return;
+        }
+        this.inFlightReads.remove(key);
+
+        List<ReadRequestMsg> followers = this.parkedReads.remove(requestId);
+        if (followers == null) {
+            return;
+        }
+        for (ReadRequestMsg follower : followers) {
+            // the path of the follower does not contain this cache, so it is already the path of the response
+            ReadResponseMsg response = new ReadResponseMsg(key, value, follower.getPath(), follower.getRequestId());
+            nextHop(follower.getPath(), follower.getRequestId()).tell(response, getSelf());
+            sentReadResponse(follower.getRequestId());
+        }
+        log.info("[{} CACHE {}] Answered " + followers.size() + " parked read requests for key {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(key));
+    }
+
+    // the followers parked behind a leader shed by the parent (or dropped as stale) are shed too, otherwise they
+    // would never be answered
+    private void overloadParkedReads(int key, long requestId) {
+        Long leaderId = this.inFlightReads.get(key);
+        if (leaderId == null || leaderId != requestId) {
+            return;
+        }
+        this.inFlightReads.remove(key);
+
+        List<ReadRequestMsg> followers = this.parkedReads.remove(requestId);
+        if (followers == null) {
+            return;
+        }
+        for (ReadRequestMsg follower : followers) {
+            ActorRef destination = nextHop(follower.getPath(), follower.getRequestId());
+            // a follower already dropped as stale, with hop-local routing
+            if (destination == null) {
+                continue;
+            }
+            destination.tell(new OverloadedResponseMsg(follower.getPath(), follower.getRequestId()), getSelf());
+            sentReadResponse(follower.getRequestId());
+        }
+        log.info("[{} CACHE {}] Sent overloaded response to " + followers.size() + " parked read requests for key {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(key));
     }
 
     //----------CHILDREN LOGIC----------
@@ -284,6 +636,8 @@ public class Cache extends AbstractActor{
 
     public void setParent(ActorRef parent) {
         this.parent = parent;
+        // the new parent is monitored from now on
+        resetParentDetector();
     }
 
     public ActorRef getParent(){
@@ -301,6 +655,7 @@ public class Cache extends AbstractActor{
     public void setTimeouts(List<TimeoutConfiguration> timeouts)    {
         for (TimeoutConfiguration timeout: timeouts){
             this.timeouts.put(timeout.getType(), timeout.getValue());
+            this.rtt.setBounds(timeout);
         }
     }
 
@@ -320,155 +675,266 @@ public class Cache extends AbstractActor{
 
         // special timeout, related to the recovery process
         if(type.equals("response_data_recover")){
-            getContext().system().scheduler().scheduleOnce(
-                Duration.create(getTimeout(type), TimeUnit.SECONDS),
-                getSelf(),
+            getTimers().startSingleTimer(
+                type,
                 new TimeoutMsg(type, -1, ""),
-                getContext().system().dispatcher(),
-                getSelf()
+                Duration.ofSeconds(getTimeout(type))
             );
         }
     }
 
+    // timers are keyed by request id: a restart for the same request replaces the pending timer
+    // and a timer cancelled before firing never delivers its TimeoutMsg
+    private static String timeoutKey(long requestId) {
+        return "request-" + requestId;
+    }
+
     private void startTimeout(String type, long requestId) {
-        log.info("[{} CACHE {}] Starting timeout for " + type + " operation, " + getTimeout(type) + " seconds. ", this.type_of_cache.toString(), String.valueOf(this.id));
+        Duration timeout = this.rtt.timeout(type);
+        log.info("[{} CACHE {}] Starting timeout for " + type + " operation, " + timeout.toMillis() + " ms. ", this.type_of_cache.toString(), String.valueOf(this.id));
 
-        getContext().system().scheduler().scheduleOnce(
-            Duration.create(getTimeout(type), TimeUnit.SECONDS),
-            getSelf(),
+        getTimers().startSingleTimer(
+            timeoutKey(requestId),
             new TimeoutMsg(type, requestId, getParent().path().name()),
-            getContext().system().dispatcher(),
-            getSelf()
+            timeout
         );
+        this.rtt.sent(requestId);
+    }
+
+    private void cancelTimeout(long requestId) {
+        getTimers().cancel(timeoutKey(requestId));
+        getTimers().cancel(hedgeKey(requestId));
+        this.rtt.forget(requestId);
+    }
+
+    // the response of a request forwarded to the parent arrived, before its timeout is cancelled
+    private void sampleLatency(long requestId) {
+        Request request = this.requests.get(requestId);
+        if (request != null) {
+            this.rtt.answered(request.getType(), requestId);
+        }
     }
 
     // ----------REQUEST LOGIC----------
 
     private void receivedReadRequest(ActorRef requester, String requesterType, ReadRequestMsg msg) {
         Request request = new Request("read", requesterType, requester, msg.getKey(), msg.getRequestId());
-        this.requests.put(request.getRequestId(), request);
+        request.setPath(msg.getPath());
+        dropStaleRequests(this.requests.put(request));
         log.info("[{} CACHE {}] Put read request in hashmap", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     private void receivedWriteRequest(ActorRef requester, String requesterType, WriteRequestMsg msg) {
         Request request = new Request("write", requesterType, requester, msg.getKey(), msg.getRequestId());
+        request.setPath(msg.getPath());
         request.setValue(msg.getValue()); // since it's a write request, we need to set also the value
-        this.requests.put(request.getRequestId(), request);
+        request.setTtl(msg.getTtl());
+        dropStaleRequests(this.requests.put(request));
         log.info("[{} CACHE {}] Put write request in hashmap", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     private void receivedCriticalReadRequest(ActorRef requester, String requesterType, CriticalReadRequestMsg msg) {
         Request request = new Request("crit_read", requesterType, requester, msg.getKey(), msg.getRequestId());
-        this.requests.put(request.getRequestId(), request);
+        request.setPath(msg.getPath());
+        dropStaleRequests(this.requests.put(request));
         log.info("[{} CACHE {}] Put critical read request in hashmap", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     private void receivedCriticalWriteRequest(ActorRef requester, String requesterType, CriticalWriteRequestMsg msg) {
         Request request = new Request("crit_write", requesterType, requester, msg.getKey(), msg.getRequestId());
+        request.setPath(msg.getPath());
         request.setValue(msg.getValue()); // since it's a critical write request, we need to set also the value
-        this.requests.put(request.getRequestId(), request);
+        dropStaleRequests(this.requests.put(request));
         log.info("[{} CACHE {}] Put critical write request in hashmap", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
+    // requests never answered (e.g. lost responses) are dropped by the table when they become stale
+    private void dropStaleRequests(List<Request> stale) {
+        for (Request request : stale) {
+            // a stale leader must not keep parked the following reads of the same key
+            // they have no timeout of their own: their requesters are told to back off and retry,
+            // instead of waiting for their own timeout and treating this cache as crashed
+            overloadParkedReads(request.getKey(), request.getRequestId());
+            cancelTimeout(request.getRequestId());
+            log.info("[{} CACHE {}] Dropped stale request {}", this.type_of_cache.toString(), String.valueOf(this.id), request.toString());
+        }
+    }
+
+    // ----------ROUTING LOGIC----------
+
+    // two routing modes, chosen by the client for each request:
+    // path routing: the request carries the actors it went through, and the response goes back along that path
+    // hop-local routing: the path is empty, each cache remembers the requester of the request in the request table
+    // and the response goes back hop by hop, so messages do not carry any ActorRef
+
+    // in hop-local routing the requester is known from the level of the cache
+    private boolean isFromClient(RequestPath path) {
+        return path.isEmpty() ? getCacheType() == TYPE.L2 : path.size() == 1;
+    }
+
+    private boolean isFromL2(RequestPath path) {
+        return path.isEmpty() ? getCacheType() == TYPE.L1 : path.size() == 2;
+    }
+
+    // path of a request forwarded to the parent
+    private RequestPath forwardPath(RequestPath path) {
+        return path.isEmpty() ? path : path.push(getSelf());
+    }
+
+    // path of a response forwarded to the child, without this cache
+    private RequestPath responsePath(RequestPath path) {
+        return path.isEmpty() ? path : path.pop();
+    }
+
+    // actor to send the response of requestId to, null if it is unknown
+    // (hop-local routing of a request no longer in the table, e.g. dropped as stale or lost in a crash)
+    private ActorRef nextHop(RequestPath path, long requestId) {
+        if (!path.isEmpty()) {
+            return path.peek();
+        }
+        Request request = this.requests.get(requestId);
+        return request == null ? null : request.getRequester();
+    }
+
     // ----------RESPONSE LOGIC----------
 
     public void sentReadResponse(long requestId) {
-        this.requests.get(requestId).setFulfilled();
-        log.info("[{} CACHE {}] Set read request as fulfilled", this.type_of_cache.toString(), String.valueOf(this.id));
+        sampleLatency(requestId);
+        this.requests.complete(requestId);
+        cancelTimeout(requestId);
+        log.info("[{} CACHE {}] Removed read request", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     public void sentWriteResponse(long requestId) {
-        this.requests.get(requestId).setFulfilled();
-        log.info("[{} CACHE {}] Set write request as fulfilled", this.type_of_cache.toString(), String.valueOf(this.id));
+        sampleLatency(requestId);
+        this.requests.complete(requestId);
+        cancelTimeout(requestId);
+        log.info("[{} CACHE {}] Removed write request", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     public void sentCriticalReadResponse(long requestId) {
-        this.requests.get(requestId).setFulfilled();
-        log.info("[{} CACHE {}] Set critical read request as fulfilled", this.type_of_cache.toString(), String.valueOf(this.id));
+        sampleLatency(requestId);
+        this.requests.complete(requestId);
+        cancelTimeout(requestId);
+        log.info("[{} CACHE {}] Removed critical read request", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
     public void sentCriticalWriteResponse(long requestId) {
-        this.requests.get(requestId).setFulfilled();
-        log.info("[{} CACHE {}] Set critical write request as fulfilled", this.type_of_cache.toString(), String.valueOf(this.id));
+        sampleLatency(requestId);
+        this.requests.complete(requestId);
+        cancelTimeout(requestId);
+        log.info("[{} CACHE {}] Removed critical write request", this.type_of_cache.toString(), String.valueOf(this.id));
     }
 
-    // ----------DELAY LOGIC----------
+    // ----------LATENCY LOGIC----------
 
-    public void addDelayInSeconds(int seconds) {
-        try {
-            log.info("[{} CACHE {}] Adding delay of {} seconds", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(seconds));
-            Thread.sleep(seconds * 1000);
-        } catch (InterruptedException e) {
-            log.error("[{} CACHE {}] Error while adding delay!", this.type_of_cache.toString(), String.valueOf(this.id));
-            e.printStackTrace();
+    // link of the messages received from sender, null if they are not delayed (e.g. master, self)
+    // during the selection of a new parent, orphaned L2 caches and sibling L1 caches are not children or parent yet
+    private String linkOf(ActorRef sender, Object msg) {
+        if (sender.equals(this.database)) {
+            return this.type_of_cache == TYPE.L1 ? LatencyInjector.L1_DB : LatencyInjector.L2_DB;
         }
-    }
-
-    public void addNetworkDelay() {
-        int milliseconds = rnd.nextInt(1000);
-        try {
-            log.info("[{} CACHE {}] Adding network delay of {} milliseconds", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(milliseconds));
-            Thread.sleep(milliseconds);
-        } catch (InterruptedException e) {
-            log.error("[{} CACHE {}] Error while adding network delay!", this.type_of_cache.toString(), String.valueOf(this.id));
-            e.printStackTrace();
+        if (this.type_of_cache == TYPE.L1) {
+            if (this.children.contains(sender)) {
+                return LatencyInjector.L2_L1;
+            }
+            return msg instanceof LoadRequestMsg || msg instanceof RequestConnectionMsg ? LatencyInjector.L2_L1 : null;
+        }
+        if (sender.equals(getParent()) || this.l1Caches.contains(sender)) {
+            return LatencyInjector.L2_L1;
         }
+        return this.children.contains(sender) ? LatencyInjector.CLIENT_L2 : null;
     }
 
     // ----------TIMEOUT LOGIC----------
 
+    // remember the parent that stopped answering before switching to a new parent
+    // (a later timeout, when the parent is already the database, must not overwrite it)
+    private void recordFailedParent() {
+        if (!getParent().equals(getDatabase())) {
+            this.failedParent = getParent();
+        }
+    }
+
     // this business logic is used ONLY by L2 caches
     public void retryRequests(){
+        if (this.failedParent == null) {
+            return;
+        }
 
         // for now, this function is called only by L2 caches
+        // only the requests forwarded to the failed parent are retried
+        // parked reads were never forwarded, they are answered together with their leader
 
         System.out.println("inside retryRequests");
-        for (Request request : this.requests.values()) {
+        for (Request request : this.requests.pendingOn(this.failedParent)) {
             System.out.println("request: " + request);
-            if (!request.isFulfilled()) {
-                log.info("[{} CACHE {}] Retrying request with id {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(request.getRequestId()));
-
-                // recreate the path
-                Stack<ActorRef> path = new Stack<>();
-                path.push(request.getRequester()); // requester: client
-                path.push(getSelf()); // L2 cache
-                System.out.println("recreated path: " + path);
-
-                if (request.getType().equals("read")) {
-
-                    // forward the request to the parent (db)
-                    // note that the db could have already been asked the same request from the crashed L1 cache
-                    // but the response never arrived to the L2 cache (due to the L1 cache crash), so it's ok to ask again
-                    getParent().tell(new ReadRequestMsg(request.getKey(), path, request.getRequestId()), getSelf());
-                    log.info("[{} CACHE {}] Forwarded read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
-                } else if (request.getType().equals("write")) {
-
-                    // in this case we overwrite the same value in the db
-                    // if the db has already been asked the same request from the crashed L1 cache
-                    getParent().tell(new WriteRequestMsg(request.getKey(), request.getValue(), path, request.getRequestId()), getSelf());
-                    log.info("[{} CACHE {}] Forwarded read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
-                } else if (request.getType().equals("crit_read")) {
-
-                    // like read, note that the db could have already been asked the same request from the crashed L1 cache
-                    // but the response never arrived to the L2 cache (due to the L1 cache crash), so it's ok to ask again
-                    getParent().tell(new CriticalReadRequestMsg(request.getKey(), path, request.getRequestId()), getSelf());
-                    log.info("[{} CACHE {}] Forwarded critical read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
-                } else if (request.getType().equals("crit_write")) {
-
-                    System.out.println("inside retry request, crit write if");
-
-                    // if the db has already been asked the same request from the crashed L1 cache
-                    // it will deal by itself with the following message and send a CriticalWriteResponseMsg with isRefused = true
-                    // since the key is already present in ongoingCritWrites
-                    // otherwise, it will start the normal procedure of critical write
-
-                    getParent().tell(new CriticalWriteRequestMsg(request.getKey(), request.getValue(), path, request.getRequestId()), getSelf());
-                    log.info("[{} CACHE {}] Forwarded critical write request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+            log.info("[{} CACHE {}] Retrying request with id {}", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(request.getRequestId()));
 
-                } else {
-                    log.error("[{} CACHE {}] Error: unknown request type {}", this.type_of_cache.toString(), String.valueOf(this.id), request.getType());
-                }
+            // recreate the path: requester (client), then L2 cache (empty path with hop-local routing)
+            RequestPath path = forwardPath(request.getPath());
+            System.out.println("recreated path: " + path);
+
+            if (request.getType().equals("read")) {
+
+                // forward the request to the new parent (the db, or a sibling L1 cache with sibling failover)
+                // note that the db could have already been asked the same request from the crashed L1 cache
+                // but the response never arrived to the L2 cache (due to the L1 cache crash), so it's ok to ask again
+                getParent().tell(new ReadRequestMsg(request.getKey(), path, request.getRequestId()), getSelf());
+                log.info("[{} CACHE {}] Forwarded read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+            } else if (request.getType().equals("write")) {
+
+                // in this case we overwrite the same value in the db
+                // if the db has already been asked the same request from the crashed L1 cache
+                getParent().tell(new WriteRequestMsg(request.getKey(), request.getValue(), path, request.getRequestId(), request.getTtl()), getSelf());
+                log.info("[{} CACHE {}] Forwarded read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+            } else if (request.getType().equals("crit_read")) {
+
+                // like read, note that the db could have already been asked the same request from the crashed L1 cache
+                // but the response never arrived to the L2 cache (due to the L1 cache crash), so it's ok to ask again
+                getParent().tell(new CriticalReadRequestMsg(request.getKey(), path, request.getRequestId()), getSelf());
+                log.info("[{} CACHE {}] Forwarded critical read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+            } else if (request.getType().equals("crit_write")) {
+
+                System.out.println("inside retry request, crit write if");
+
+                // if the db has already been asked the same request from the crashed L1 cache
+                // it will deal by itself with the following message and send a CriticalWriteResponseMsg with isRefused = true
+                // since the key is already present in ongoingCritWrites
+                // otherwise, it will start the normal procedure of critical write
+
+                getParent().tell(new CriticalWriteRequestMsg(request.getKey(), request.getValue(), path, request.getRequestId()), getSelf());
+                log.info("[{} CACHE {}] Forwarded critical write request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+
+            } else if (request.getType().equals("multi_read")) {
+
+                // only the keys that were not served locally are asked again
+                int[] missing = request.getValues().entrySet().stream()
+                        .filter(entry -> entry.getValue() == null)
+                        .mapToInt(Map.Entry::getKey)
+                        .toArray();
+                getParent().tell(new MultiReadRequestMsg(missing, path, request.getRequestId()), getSelf());
+                log.info("[{} CACHE {}] Forwarded multi read request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+
+            } else if (request.getType().equals("multi_write")) {
+
+                // like write, the database may apply the same batch twice, with the same values
+                int[] keys = request.getValues().keySet().stream().mapToInt(Integer::intValue).toArray();
+                int[] values = request.getValues().values().stream().mapToInt(Integer::intValue).toArray();
+                getParent().tell(new MultiWriteRequestMsg(keys, values, path, request.getRequestId(), request.getTtl()), getSelf());
+                log.info("[{} CACHE {}] Forwarded multi write request to {}", this.type_of_cache.toString(), String.valueOf(this.id), getParent().path().name());
+
+            } else {
+                log.error("[{} CACHE {}] Error: unknown request type {}", this.type_of_cache.toString(), String.valueOf(this.id), request.getType());
+            }
+
+            // the request is now pending on the new parent, the latency of its first send is not sampled
+            // a sibling L1 cache can crash too: the timeout of the request starts again, against it
+            this.requests.forwarded(request.getRequestId(), getParent());
+            if (!getParent().equals(getDatabase())) {
+                startTimeout(request.getType(), request.getRequestId());
             }
+            this.rtt.forget(request.getRequestId());
         }
     }
 
@@ -476,6 +942,8 @@ public class Cache extends AbstractActor{
 
     public void preStart() {
         log.info("[{} CACHE {}] Started!", this.type_of_cache.toString(), String.valueOf(this.id));
+        scheduleExpirySweep();
+        scheduleHeartbeat();
     }
 
     private void sendInitMsg(){
@@ -487,9 +955,10 @@ public class Cache extends AbstractActor{
     // ----------RECEIVE LOGIC----------
 
     // Here we define the mapping between the received message types and the database methods
+    // incoming messages go through the simulated network latency first
     @Override
     public Receive createReceive() {
-        return receiveBuilder()
+        return this.latency.wrap(receiveBuilder()
                 .match(StartInitMsg.class, this::onStartInitMsg)
                 .match(InitMsg.class, this::onInitMsg)
                 .match(DummyMsg.class, this::onDummyMsg)
@@ -497,10 +966,15 @@ public class Cache extends AbstractActor{
 
                 .match(ReadRequestMsg.class, this::onReadRequestMsg)
                 .match(ReadResponseMsg.class, this::onReadResponseMsg)
+                .match(MultiReadRequestMsg.class, this::onMultiReadRequestMsg)
+                .match(MultiReadResponseMsg.class, this::onMultiReadResponseMsg)
 
                 .match(WriteRequestMsg.class, this::onWriteRequestMsg)
                 .match(WriteResponseMsg.class, this::onWriteResponseMsg)
                 .match(FillMsg.class, this::onFillMsg)
+                .match(MultiWriteRequestMsg.class, this::onMultiWriteRequestMsg)
+                .match(MultiWriteResponseMsg.class, this::onMultiWriteResponseMsg)
+                .match(MultiFillMsg.class, this::onMultiFillMsg)
 
                 .match(CriticalReadRequestMsg.class, this::onCriticalReadRequestMsg)
                 .match(CriticalReadResponseMsg.class, this::onCriticalReadResponseMsg)
@@ -508,6 +982,8 @@ public class Cache extends AbstractActor{
                 .match(CriticalWriteRequestMsg.class, this::onCriticalWriteRequestMsg)
                 .match(CriticalWriteResponseMsg.class, this::onCriticalWriteResponseMsg)
 
+                .match(OverloadedResponseMsg.class, this::onOverloadedResponseMsg)
+
                 .match(ProposedWriteMsg.class, this::onProposedWriteMsg)
                 .match(AcceptedWriteMsg.class, this::onAcceptedWriteMsg)
                 .match(ApplyWriteMsg.class, this::onApplyWriteMsg)
@@ -520,11 +996,21 @@ public class Cache extends AbstractActor{
                 .match(RequestDataRecoverMsg.class, this::onRequestDataRecoverMsg)
                 .match(ResponseDataRecoverMsg.class, this::onResponseDataRecoverMsg)
                 .match(UpdateDataMsg.class, this::onUpdateDataMsg)
+                .match(ParentRecoveredMsg.class, this::onParentRecoveredMsg)
+                .match(RequestDisconnectionMsg.class, this::onRequestDisconnectionMsg)
+                .match(LoadRequestMsg.class, this::onLoadRequestMsg)
+                .match(LoadResponseMsg.class, this::onLoadResponseMsg)
+                .match(SelectParentMsg.class, this::onSelectParentMsg)
                 .match(ResponseUpdatedDataMsg.class, this::onResponseUpdatedDataMsg)
 
                 .match(CrashMsg.class, this::onCrashMsg)
                 .match(RecoverMsg.class, this::onRecoverMsg)
                 .match(TimeoutMsg.class, this::onTimeoutMsg)
+                .match(ExpirySweepMsg.class, this::onExpirySweepMsg)
+                .match(HedgeReadMsg.class, this::onHedgeReadMsg)
+                .match(HeartbeatTickMsg.class, this::onHeartbeatTickMsg)
+                .match(HeartbeatMsg.class, this::onHeartbeatMsg)
+                .match(HeartbeatAckMsg.class, this::onHeartbeatAckMsg)
                 //.match(TimeoutElapsedMsg.class, this::onTimeoutElapsedMsg) // not needed
 
                 .match(InfoItemsMsg.class, this::onInfoItemsMsg)
@@ -532,14 +1018,15 @@ public class Cache extends AbstractActor{
                 .matchAny(o -> log.info("[{} CACHE {}] Received unknown message from {} {}!",
                         getCacheType().toString(), String.valueOf(getID()), getSender().path().name(),
                         o.getClass().getName()))
-                .build();
+                .build());
     }
 
+    // messages delayed before the crash are delivered (and dropped) anyway
     public Receive crashed() {
-        return receiveBuilder()
+        return this.latency.wrap(receiveBuilder()
             .match(RecoverMsg.class, this::onRecoverMsg)
             .matchAny(msg -> {})
-            .build();
+            .build());
     }
 
     // ----------INITIALIZATION MESSAGES LOGIC----------
@@ -571,7 +1058,7 @@ public class Cache extends AbstractActor{
     // ----------HEALTH CHECK MESSAGES LOGIC----------
 
     public void onHealthCheckRequest(HealthCheckRequestMsg msg) {
-        HealthCheckResponseMsg new_msg = new HealthCheckResponseMsg(getData());
+        HealthCheckResponseMsg new_msg = new HealthCheckResponseMsg(getData().toMap());
         getSender().tell(new_msg, getSelf());
     }
 
@@ -581,19 +1068,14 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received read request msg from {}, asking for key {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name(), readRequestMsg.getKey());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), delay);
 
         // check size of path
         // 1 means that the request is coming from a client -> LL: [Client]
         // 2 means that the request is coming from a L2 cache -> LL: [Client, L2_Cache]
-        if(readRequestMsg.getPathSize() == 1) {
+        if(isFromClient(readRequestMsg.getPath())) {
             receivedReadRequest(getSender(), "client", readRequestMsg);
-        } else if (readRequestMsg.getPathSize() == 2) {
+        } else if (isFromL2(readRequestMsg.getPath())) {
             receivedReadRequest(getSender(), "L2", readRequestMsg);
         } else {
             log.error("[{} CACHE {}] [ORRM_1] Probably wrong route!",  getCacheType().toString(), String.valueOf(getID()));
@@ -601,19 +1083,29 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Request log: {}", getCacheType().toString(), String.valueOf(getID()), this.requests.toString());
 
-        //if data is present
-        if (isDataPresent(readRequestMsg.getKey())){
+        // an expired key is dropped before the lookup, so the read goes to the parent
+        expireIfNeeded(readRequestMsg.getKey());
+
+        // single lookup, IntIntMap.MISSING means the key is not cached
+        int value = getData(readRequestMsg.getKey());
+
+        // a key known to be missing in the database is answered without asking the parent
+        boolean isNegativeHit = value == IntIntMap.MISSING && this.negativeCache.contains(readRequestMsg.getKey(), expiryClock());
+        recordReadAccess(readRequestMsg.getKey(), value != IntIntMap.MISSING || isNegativeHit);
+
+        //if data is present (or known to be missing in the database)
+        if (value != IntIntMap.MISSING || isNegativeHit){
 
             // check size of path
             // 1 means that the request is coming from a client -> LL: [Client]
             // 2 means that the request is coming from a L2 cache -> LL: [Client, L2_Cache]
-            if(readRequestMsg.getPathSize() != 1 && readRequestMsg.getPathSize() != 2){
+            if(!isFromClient(readRequestMsg.getPath()) && !isFromL2(readRequestMsg.getPath())){
                 log.error("[{} CACHE {}] [ORRM_2] Probably wrong route!",  getCacheType().toString(), String.valueOf(getID()));
                 //TODO: send special error message to client or master
             }
 
             //response to be sent to child (either client or l2 cache)
-            ActorRef child = readRequestMsg.getLast();
+            ActorRef child = nextHop(readRequestMsg.getPath(), readRequestMsg.getRequestId());
 
             //check if child is between the children of this cache
             if (!getChildren().contains(child)){
@@ -621,13 +1113,12 @@ public class Cache extends AbstractActor{
                 //TODO: send special error message to client or master
             }
 
-            int value = getData(readRequestMsg.getKey());
-
             log.info("[{} CACHE {}] Data is present in cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), readRequestMsg.getKey(), value);
 
             ReadResponseMsg response = new ReadResponseMsg(readRequestMsg.getKey(), value, readRequestMsg.getPath(), readRequestMsg.getRequestId());
             child.tell(response, getSelf());
             log.info("[{} CACHE {}] Sent read response msg to {}", getCacheType().toString(), String.valueOf(getID()), child.path().name());
+            sentReadResponse(readRequestMsg.getRequestId());
 
         }
         else { // data not present in cache
@@ -635,18 +1126,25 @@ public class Cache extends AbstractActor{
 
             log.info("[{} CACHE {}] Data is not present in cache; key:{}", getCacheType().toString(), String.valueOf(getID()), readRequestMsg.getKey());
 
-            //adding cache to path
-            Stack<ActorRef> newPath = new Stack<>();
-            newPath.addAll(readRequestMsg.getPath());
-            newPath.add(getSelf());
+            // the same key has already been asked to the parent, wait for that response
+            // no timeout is started for a parked read, the leader one covers it
+            if (parkIfInFlight(readRequestMsg)) {
+                log.info("[{} CACHE {}] Read request for key {} parked, waiting for the response to an in-flight request", getCacheType().toString(), String.valueOf(getID()), readRequestMsg.getKey());
+                return;
+            }
+
+            //adding cache to path, the path of the received request is shared
+            RequestPath newPath = forwardPath(readRequestMsg.getPath());
 
             ReadRequestMsg upperReadRequestMsg = new ReadRequestMsg(readRequestMsg.getKey(), newPath, readRequestMsg.getRequestId());
             getParent().tell(upperReadRequestMsg, getSelf());
+            this.requests.forwarded(upperReadRequestMsg.getRequestId(), getParent());
             log.info("[{} CACHE {}] Sent read request msg to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
 
             if (getCacheType() == TYPE.L2) {
                 startTimeout("read", upperReadRequestMsg.getRequestId());
                 log.info("[{} CACHE {}] Started timeout for read request msg with id {}", getCacheType().toString(), String.valueOf(getID()), upperReadRequestMsg.getRequestId());
+                scheduleHedge(upperReadRequestMsg.getRequestId());
                 //crash();
             } else {
                 log.info("[{} CACHE {}] L1 cache, No timeout needed for read request", getCacheType().toString(), String.valueOf(getID()));
@@ -661,19 +1159,18 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received read response msg from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), delay);
-
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
+        // hedged read: the first response answered the request, the second one is dropped
+        if (getCacheType() == TYPE.L2 && hedgedResponse(readResponseMsg.getRequestId())) {
+            return;
+        }
 
         //add data to cache
-        if (readResponseMsg.getValue() != -1) {
+        if (readResponseMsg.getValue() != IntIntMap.MISSING) {
             addData(readResponseMsg.getKey(), readResponseMsg.getValue());
             log.info("[{} CACHE {}] Added data to cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), readResponseMsg.getKey(), readResponseMsg.getValue());
         } else {
-            log.info("[{} CACHE {}] Data not present in database, do not add -1 value", getCacheType().toString(), String.valueOf(getID()));
+            this.negativeCache.add(readResponseMsg.getKey(), expiryClock());
+            log.info("[{} CACHE {}] Data not present in database, key {} added to the negative cache", getCacheType().toString(), String.valueOf(getID()), readResponseMsg.getKey());
         }
 
         //check size of path:
@@ -681,22 +1178,22 @@ public class Cache extends AbstractActor{
         // 3 means that the response is for a l2 cache -> LL:[Client, L2_Cache, L1_Cache]
         // other values are not allowed
 
-        if(readResponseMsg.getPathSize() != 2 && readResponseMsg.getPathSize() != 3){
+        if(!readResponseMsg.getPath().isEmpty() && readResponseMsg.getPathSize() != 2 && readResponseMsg.getPathSize() != 3){
             log.info("[{} CACHE {}] [ORResM] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
             //TODO: send special error message to client or master
         }
 
-        //create new path without the current cache
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(readResponseMsg.getPath());
-
-        //remove last element from path, which is the current cache
-        newPath.pop();
+        //create new path without the current cache (last element of the path)
+        RequestPath newPath = responsePath(readResponseMsg.getPath());
 
         System.out.println("Path size in cache!!! " + newPath.size());
 
         //child can be a client or a l2 cache
-        ActorRef child = newPath.get(newPath.size()-1); //get (not remove) last element from path
+        ActorRef child = nextHop(newPath, readResponseMsg.getRequestId());
+        if (child == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(readResponseMsg.getRequestId()));
+            return;
+        }
 
         //check if child is between the children of this cache
         if (!getChildren().contains(child)) {
@@ -713,45 +1210,153 @@ public class Cache extends AbstractActor{
         //System.out.println("TEST, cache" + getCacheType()+ getID()+ readResponseMsg.getRequestId());
         sentReadResponse(readResponseMsg.getRequestId());
 
+        answerParkedReads(readResponseMsg.getKey(), readResponseMsg.getValue(), readResponseMsg.getRequestId());
+
         log.info("[{} CACHE {}] Request completed", getCacheType().toString(), String.valueOf(getID()));
         log.info("[{} CACHE {}] All Requests: {}", getCacheType().toString(), String.valueOf(getID()), this.requests.toString());
     }
 
+    // ----------MULTI READ MESSAGES LOGIC----------
+
+    // the keys found in the cache are served locally, the missing ones are asked to the parent with a single message
+    // the response of the parent is merged with the local values and sent to the child as a single response
+    public void onMultiReadRequestMsg(MultiReadRequestMsg msg) {
+
+        log.info("[{} CACHE {}] Received multi read request msg from {}, asking for " + msg.getKeys().length + " keys", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        String requesterType;
+        if (isFromClient(msg.getPath())) {
+            requesterType = "client";
+        } else if (isFromL2(msg.getPath())) {
+            requesterType = "L2";
+        } else {
+            log.error("[{} CACHE {}] [OMRRM] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
+            return;
+        }
+
+        // key -> value, null for the keys asked to the parent
+        LinkedHashMap<Integer, Integer> values = new LinkedHashMap<>();
+        int[] missing = new int[msg.getKeys().length];
+        int missingCount = 0;
+        for (int key : msg.getKeys()) {
+            if (values.containsKey(key)) {
+                continue;
+            }
+            expireIfNeeded(key);
+            int value = getData(key);
+            boolean isNegativeHit = value == IntIntMap.MISSING && this.negativeCache.contains(key, expiryClock());
+            recordReadAccess(key, value != IntIntMap.MISSING || isNegativeHit);
+
+            if (value != IntIntMap.MISSING || isNegativeHit) {
+                values.put(key, value);
+            } else {
+                values.put(key, null);
+                missing[missingCount++] = key;
+            }
+        }
+
+        Request request = new Request("multi_read", requesterType, getSender(), msg.getKeys().length > 0 ? msg.getKeys()[0] : IntIntMap.MISSING, msg.getRequestId());
+        request.setPath(msg.getPath());
+        request.setValues(values);
+        dropStaleRequests(this.requests.put(request));
+
+        if (missingCount == 0) {
+            log.info("[{} CACHE {}] All the " + values.size() + " keys are present in cache", getCacheType().toString(), String.valueOf(getID()));
+            sendMultiReadResponse(request, msg.getPath(), getSender());
+            return;
+        }
+
+        MultiReadRequestMsg upperMultiReadRequestMsg = new MultiReadRequestMsg(Arrays.copyOf(missing, missingCount), forwardPath(msg.getPath()), msg.getRequestId());
+        getParent().tell(upperMultiReadRequestMsg, getSelf());
+        this.requests.forwarded(msg.getRequestId(), getParent());
+        log.info("[{} CACHE {}] Sent multi read request msg for " + missingCount + " missing keys to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+
+        if (getCacheType() == TYPE.L2) {
+            startTimeout("multi_read", msg.getRequestId());
+        }
+    }
+
+    public void onMultiReadResponseMsg(MultiReadResponseMsg msg) {
+
+        log.info("[{} CACHE {}] Received multi read response msg from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        int[] keys = msg.getKeys();
+        int[] values = msg.getValues();
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != IntIntMap.MISSING) {
+                addData(keys[i], values[i]);
+            } else {
+                this.negativeCache.add(keys[i], expiryClock());
+            }
+        }
+
+        RequestPath newPath = responsePath(msg.getPath());
+        ActorRef child = nextHop(newPath, msg.getRequestId());
+        if (child == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(msg.getRequestId()));
+            return;
+        }
+
+        Request request = this.requests.get(msg.getRequestId());
+        if (request == null || request.getValues() == null) {
+            // the local part of the request is lost (e.g. dropped as stale), forward what the parent answered
+            child.tell(new MultiReadResponseMsg(keys, values, newPath, msg.getRequestId()), getSelf());
+            sentReadResponse(msg.getRequestId());
+            return;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            if (request.getValues().containsKey(keys[i])) {
+                request.getValues().put(keys[i], values[i]);
+            }
+        }
+        sendMultiReadResponse(request, newPath, child);
+    }
+
+    private void sendMultiReadResponse(Request request, RequestPath path, ActorRef child) {
+        int[] keys = new int[request.getValues().size()];
+        int[] values = new int[keys.length];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : request.getValues().entrySet()) {
+            keys[i] = entry.getKey();
+            // a key not answered by the parent is reported as missing
+            values[i++] = entry.getValue() != null ? entry.getValue() : IntIntMap.MISSING;
+        }
+
+        child.tell(new MultiReadResponseMsg(keys, values, path, request.getRequestId()), getSelf());
+        log.info("[{} CACHE {}] Sent multi read response msg to {}", getCacheType().toString(), String.valueOf(getID()), child.path().name());
+        sentReadResponse(request.getRequestId());
+    }
+
     // ----------WRITE MESSAGES LOGIC----------
 
     private void onWriteRequestMsg(WriteRequestMsg writeRequestMsg){
 
         log.info("[{} CACHE {}] Received write request msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), writeRequestMsg.getKey(), writeRequestMsg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), delay);
 
         // check size of path
         // 1 means that the request is coming from a client -> LL: [Client]
         // since a client can only send a request to a L2 cache, we are a L2 cache
         // 2 means that the request is coming from a L2 cache -> LL: [Client, L2_Cache]
         // since a L2 cache can only send a request to a L1 cache, we are a L1 cache
-        if(writeRequestMsg.getPathSize() == 1) {
+        if(isFromClient(writeRequestMsg.getPath())) {
             receivedWriteRequest(getSender(), "client", writeRequestMsg);
-        } else if (writeRequestMsg.getPathSize() == 2) {
+        } else if (isFromL2(writeRequestMsg.getPath())) {
             receivedWriteRequest(getSender(), "L2", writeRequestMsg);
         } else {
             log.error("[{} CACHE {}] [OWRM] Probably wrong route!",  getCacheType().toString(), String.valueOf(getID()));
         }
 
-        //adding cache to path
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(writeRequestMsg.getPath());
-        newPath.add(getSelf());
+        //adding cache to path, the path of the received request is shared
+        RequestPath newPath = forwardPath(writeRequestMsg.getPath());
 
-        WriteRequestMsg upperWriteRequestMsg = new WriteRequestMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue(), newPath, writeRequestMsg.getRequestId());
+        WriteRequestMsg upperWriteRequestMsg = new WriteRequestMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue(), newPath, writeRequestMsg.getRequestId(), writeRequestMsg.getTtl());
         log.info("[{} CACHE {}] Path: {}", getCacheType().toString(), String.valueOf(getID()), upperWriteRequestMsg.getPath().toString());
 
         parent.tell(upperWriteRequestMsg, getSelf());
+        this.requests.forwarded(upperWriteRequestMsg.getRequestId(), parent);
         log.info("[{} CACHE {}] Sent write msg to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
 
         if (getCacheType() == TYPE.L2){
@@ -770,30 +1375,31 @@ public class Cache extends AbstractActor{
         log.info("[{} CACHE {}] Received write response msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), writeResponseMsg.getKey(), writeResponseMsg.getValue());
         log.info("[{} CACHE {}] received from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        if (data.containsKey(writeResponseMsg.getKey())){
-            data.put(writeResponseMsg.getKey(), writeResponseMsg.getValue());
+        // the key now exists in the database
+        this.negativeCache.invalidate(writeResponseMsg.getKey());
+
+        if (isDataPresent(writeResponseMsg.getKey())){
+            updateData(writeResponseMsg.getKey(), writeResponseMsg.getValue(), writeResponseMsg.getTtl());
             log.info("[{} CACHE {}] Added data to cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), writeResponseMsg.getKey(), writeResponseMsg.getValue());
         }
 
         log.info("[{} CACHE {}] Path: {}", getCacheType().toString(), String.valueOf(getID()), writeResponseMsg.getPath().toString());
 
-        if(writeResponseMsg.getPathSize() != 2 && writeResponseMsg.getPathSize() != 3){
+        if(!writeResponseMsg.getPath().isEmpty() && writeResponseMsg.getPathSize() != 2 && writeResponseMsg.getPathSize() != 3){
             log.info("[{} CACHE {}] [OWRres] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
         }
 
-        //create new path without the current cache
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(writeResponseMsg.getPath());
-
-        //remove last element from path, which is the current cache
-        newPath.pop();
+        //create new path without the current cache (last element of the path)
+        RequestPath newPath = responsePath(writeResponseMsg.getPath());
         log.info("[{} CACHE {}] new Path size in cache: {}", getCacheType().toString(), String.valueOf(getID()), newPath.size());
         log.info("[{} CACHE {}] new Path: {}", getCacheType().toString(), String.valueOf(getID()), newPath.toString());
         //destination can be a client or a l2 cache, pop without removing
-        ActorRef destination = newPath.get(newPath.size()-1);
+        ActorRef destination = nextHop(newPath, writeResponseMsg.getRequestId());
+        if (destination == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(writeResponseMsg.getRequestId()));
+            return;
+        }
         log.info("[{} CACHE {}] Destination: {}", getCacheType().toString(), String.valueOf(getID()), destination.path().name());
 
         //check if child is between the children of this cache
@@ -805,7 +1411,7 @@ public class Cache extends AbstractActor{
             log.info("[{} CACHE {}] Child not present in children list!", getCacheType().toString(), String.valueOf(getID()));
         }
 
-        WriteResponseMsg response = new WriteResponseMsg(writeResponseMsg.getKey(), writeResponseMsg.getValue(), newPath, writeResponseMsg.getRequestId());
+        WriteResponseMsg response = new WriteResponseMsg(writeResponseMsg.getKey(), writeResponseMsg.getValue(), newPath, writeResponseMsg.getRequestId(), writeResponseMsg.getTtl());
 
         // to propagate the response to the path of the request
         destination.tell(response, getSelf());
@@ -816,7 +1422,7 @@ public class Cache extends AbstractActor{
         if (type_of_cache == TYPE.L1) {
             for (ActorRef child : getChildren()) {
                 if (!child.equals(destination)) {
-                    child.tell(new FillMsg(writeResponseMsg.getKey(), writeResponseMsg.getValue()), getSelf());
+                    child.tell(new FillMsg(writeResponseMsg.getKey(), writeResponseMsg.getValue(), writeResponseMsg.getTtl()), getSelf());
                     log.info("[{} CACHE {}] Sent fill msg to {}", getCacheType().toString(), String.valueOf(getID()), child.path().name());
                 }
             }
@@ -830,30 +1436,126 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received fill msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), msg.getKey(), msg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        if (this.data.containsKey(msg.getKey())){
-            this.data.put(msg.getKey(), msg.getValue());
+        // the key now exists in the database
+        this.negativeCache.invalidate(msg.getKey());
+
+        if (isDataPresent(msg.getKey())){
+            updateData(msg.getKey(), msg.getValue(), msg.getTtl());
             log.info("[{} CACHE {}] Added data to cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), msg.getKey(), msg.getValue());
+        } else {
+            log.info("[{} CACHE {}] Data not present in cache, no adding needed", getCacheType().toString(), String.valueOf(getID()));
+        }
 
-            // propagate to children
-            // we assumed that if the value is not present in the current L1 cache, it is not present in the L2 cache children
-            // If that assumption would be false, then we must move the following out of the if statement
-            // L2 caches children are only clients, who are not interested in this message
-            // L1 caches children are only L2 caches and we are only interested in this case
-            if (this.type_of_cache == TYPE.L1) {
-                for (ActorRef child : this.children) {
-                    FillMsg fillMsg = new FillMsg(msg.getKey(), msg.getValue());
-                    child.tell(fillMsg, getSelf());
-                }
-                log.info("[{} CACHE {}] Sent fill msg to cache children", getCacheType().toString(), String.valueOf(getID()));
+        // propagate to children
+        // since caches are bounded, a key evicted from the current L1 cache can still be present in the L2 cache children
+        // therefore the fill msg is propagated even if the key is not present in the current L1 cache
+        // L2 caches children are only clients, who are not interested in this message
+        // L1 caches children are only L2 caches and we are only interested in this case
+        if (this.type_of_cache == TYPE.L1) {
+            for (ActorRef child : this.children) {
+                FillMsg fillMsg = new FillMsg(msg.getKey(), msg.getValue(), msg.getTtl());
+                child.tell(fillMsg, getSelf());
             }
+            log.info("[{} CACHE {}] Sent fill msg to cache children", getCacheType().toString(), String.valueOf(getID()));
+        }
+
+    }
+
+    // ----------MULTI WRITE MESSAGES LOGIC----------
+
+    // the batch is forwarded as a whole, the database answers with a single response along the path
+    // and with a single MultiFillMsg to each of the other caches
+    private void onMultiWriteRequestMsg(MultiWriteRequestMsg msg) {
 
+        log.info("[{} CACHE {}] Received multi write request msg from {}, writing " + msg.getKeys().length + " keys", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        String requesterType;
+        if (isFromClient(msg.getPath())) {
+            requesterType = "client";
+        } else if (isFromL2(msg.getPath())) {
+            requesterType = "L2";
         } else {
-            log.info("[{} CACHE {}] Data not present in cache, no adding needed", getCacheType().toString(), String.valueOf(getID()));
+            log.error("[{} CACHE {}] [OMWRM] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
+            return;
+        }
+
+        // key -> value, kept to send the batch again on failover
+        LinkedHashMap<Integer, Integer> values = new LinkedHashMap<>();
+        for (int i = 0; i < msg.getKeys().length; i++) {
+            values.put(msg.getKeys()[i], msg.getValues()[i]);
+        }
+
+        Request request = new Request("multi_write", requesterType, getSender(), msg.getKeys().length > 0 ? msg.getKeys()[0] : IntIntMap.MISSING, msg.getRequestId());
+        request.setPath(msg.getPath());
+        request.setValues(values);
+        request.setTtl(msg.getTtl());
+        dropStaleRequests(this.requests.put(request));
+
+        MultiWriteRequestMsg upperMultiWriteRequestMsg = new MultiWriteRequestMsg(msg.getKeys(), msg.getValues(), forwardPath(msg.getPath()), msg.getRequestId(), msg.getTtl());
+        getParent().tell(upperMultiWriteRequestMsg, getSelf());
+        this.requests.forwarded(msg.getRequestId(), getParent());
+        log.info("[{} CACHE {}] Sent multi write request msg to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+
+        if (getCacheType() == TYPE.L2) {
+            startTimeout("multi_write", msg.getRequestId());
+        }
+    }
+
+    private void onMultiWriteResponseMsg(MultiWriteResponseMsg msg) {
+
+        log.info("[{} CACHE {}] Received multi write response msg from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        applyMultiWrite(msg.getKeys(), msg.getValues(), msg.getTtl());
+
+        RequestPath newPath = responsePath(msg.getPath());
+        ActorRef child = nextHop(newPath, msg.getRequestId());
+        if (child == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(msg.getRequestId()));
+            return;
+        }
+
+        child.tell(new MultiWriteResponseMsg(msg.getKeys(), msg.getValues(), newPath, msg.getRequestId(), msg.getTtl()), getSelf());
+        log.info("[{} CACHE {}] Sent multi write response msg to {}", getCacheType().toString(), String.valueOf(getID()), child.path().name());
+
+        // the other L2 caches in the subtree get the whole batch with a single message
+        if (type_of_cache == TYPE.L1) {
+            MultiFillMsg multiFillMsg = new MultiFillMsg(msg.getKeys(), msg.getValues(), msg.getTtl());
+            for (ActorRef other : getChildren()) {
+                if (!other.equals(child)) {
+                    other.tell(multiFillMsg, getSelf());
+                }
+            }
+            log.info("[{} CACHE {}] Sent multi fill msg to cache children", getCacheType().toString(), String.valueOf(getID()));
+        }
+
+        sentWriteResponse(msg.getRequestId());
+    }
+
+    private void onMultiFillMsg(MultiFillMsg msg) {
+
+        log.info("[{} CACHE {}] Received multi fill msg for " + msg.getKeys().length + " keys from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        applyMultiWrite(msg.getKeys(), msg.getValues(), msg.getTtl());
+
+        // like onFillMsg, L1 caches propagate the batch to their L2 children even for keys they evicted
+        if (this.type_of_cache == TYPE.L1) {
+            for (ActorRef child : this.children) {
+                child.tell(msg, getSelf());
+            }
+            log.info("[{} CACHE {}] Sent multi fill msg to cache children", getCacheType().toString(), String.valueOf(getID()));
         }
+    }
 
+    // same update of a write response or a fill, for each key of the batch
+    private void applyMultiWrite(int[] keys, int[] values, int ttl) {
+        for (int i = 0; i < keys.length; i++) {
+            // the key now exists in the database
+            this.negativeCache.invalidate(keys[i]);
+            if (isDataPresent(keys[i])) {
+                updateData(keys[i], values[i], ttl);
+            }
+        }
     }
 
     // ----------CRITICAL READ MESSAGE LOGIC----------
@@ -862,19 +1564,14 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received critical read request msg from {}, asking for key {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name(), criticalReadRequestMsg.getKey());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), delay);
 
         // check size of path
         // 1 means that the request is coming from a client -> LL: [Client]
         // 2 means that the request is coming from a L2 cache -> LL: [Client, L2_Cache]
-        if(criticalReadRequestMsg.getPathSize() == 1) {
+        if(isFromClient(criticalReadRequestMsg.getPath())) {
             receivedCriticalReadRequest(getSender(), "client", criticalReadRequestMsg);
-        } else if (criticalReadRequestMsg.getPathSize() == 2) {
+        } else if (isFromL2(criticalReadRequestMsg.getPath())) {
             receivedCriticalReadRequest(getSender(), "L2", criticalReadRequestMsg);
         } else {
             log.error("[{} CACHE {}] Probably wrong route!",  getCacheType().toString(), String.valueOf(getID()));
@@ -885,13 +1582,12 @@ public class Cache extends AbstractActor{
 
 
 
-        //adding cache to path
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(criticalReadRequestMsg.getPath());
-        newPath.add(getSelf());
+        //adding cache to path, the path of the received request is shared
+        RequestPath newPath = forwardPath(criticalReadRequestMsg.getPath());
 
         CriticalReadRequestMsg upperCriticalReadRequestMsg = new CriticalReadRequestMsg(criticalReadRequestMsg.getKey(), newPath, criticalReadRequestMsg.getRequestId());
         getParent().tell(upperCriticalReadRequestMsg, getSelf());
+        this.requests.forwarded(upperCriticalReadRequestMsg.getRequestId(), getParent());
         log.info("[{} CACHE {}] Sent read request msg to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
 
         if (getCacheType() == TYPE.L2) {
@@ -908,31 +1604,31 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received critical read response msg from {}, for key {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name(), criticalReadResponseMsg.getKey());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         //add data to cache
-        addData(criticalReadResponseMsg.getKey(), criticalReadResponseMsg.getValue());
-        log.info("[{} CACHE {}] Added data to cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), criticalReadResponseMsg.getKey(), criticalReadResponseMsg.getValue());
+        if (criticalReadResponseMsg.getValue() != IntIntMap.MISSING) {
+            addData(criticalReadResponseMsg.getKey(), criticalReadResponseMsg.getValue());
+            log.info("[{} CACHE {}] Added data to cache; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), criticalReadResponseMsg.getKey(), criticalReadResponseMsg.getValue());
+        }
 
         //check size of path:
         // 2 means that the response is for a client -> LL:[Client, L2_Cache]
         // 3 means that the response is for a l2 cache -> LL:[Client, L2_Cache, L1_Cache]
         // other values are not allowed
 
-        if(criticalReadResponseMsg.getPathSize() != 2 && criticalReadResponseMsg.getPathSize() != 3){
+        if(!criticalReadResponseMsg.getPath().isEmpty() && criticalReadResponseMsg.getPathSize() != 2 && criticalReadResponseMsg.getPathSize() != 3){
             log.info("[{} CACHE {}] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
         }
 
-        //create new path without the current cache
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(criticalReadResponseMsg.getPath());
-
-        //remove last element from path, which is the current cache
-        newPath.pop();
+        //create new path without the current cache (last element of the path)
+        RequestPath newPath = responsePath(criticalReadResponseMsg.getPath());
 
         //child can be a client or a l2 cache
-        ActorRef child = newPath.get(newPath.size()-1); //get (not remove) last element from path
+        ActorRef child = nextHop(newPath, criticalReadResponseMsg.getRequestId());
+        if (child == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(criticalReadResponseMsg.getRequestId()));
+            return;
+        }
 
         //check if child is between the children of this cache
         if (!getChildren().contains(child)) {
@@ -970,35 +1666,29 @@ public class Cache extends AbstractActor{
         }
         */
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), delay);
 
         // check size of path
         // 1 means that the request is coming from a client -> LL: [Client]
         // since a client can only send a request to a L2 cache, we are a L2 cache
         // 2 means that the request is coming from a L2 cache -> LL: [Client, L2_Cache]
         // since a L2 cache can only send a request to a L1 cache, we are a L1 cache
-        if(criticalWriteRequestMsg.getPathSize() == 1) {
+        if(isFromClient(criticalWriteRequestMsg.getPath())) {
             receivedCriticalWriteRequest(getSender(), "client", criticalWriteRequestMsg);
-        } else if (criticalWriteRequestMsg.getPathSize() == 2) {
+        } else if (isFromL2(criticalWriteRequestMsg.getPath())) {
             receivedCriticalWriteRequest(getSender(), "L2", criticalWriteRequestMsg);
         } else {
             log.error("[{} CACHE {}] Probably wrong route!",  getCacheType().toString(), String.valueOf(getID()));
         }
 
-        //adding cache to path
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(criticalWriteRequestMsg.getPath());
-        newPath.add(getSelf());
+        //adding cache to path, the path of the received request is shared
+        RequestPath newPath = forwardPath(criticalWriteRequestMsg.getPath());
 
         CriticalWriteRequestMsg upperCriticalWriteRequestMsg = new CriticalWriteRequestMsg(criticalWriteRequestMsg.getKey(), criticalWriteRequestMsg.getValue(), newPath, criticalWriteRequestMsg.getRequestId());
         log.info("[{} CACHE {}] Path: {}", getCacheType().toString(), String.valueOf(getID()), upperCriticalWriteRequestMsg.getPath().toString());
 
         parent.tell(upperCriticalWriteRequestMsg, getSelf());
+        this.requests.forwarded(upperCriticalWriteRequestMsg.getRequestId(), parent);
         log.info("[{} CACHE {}] Sent critical write msg to {}", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
 
         if (getCacheType() == TYPE.L2) {
@@ -1013,30 +1703,28 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received critical write response msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), criticalWriteResponseMsg.getKey(), criticalWriteResponseMsg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         // check size of path:
         // 2 means that the response is for a client -> LL:[Client, L2_Cache]
         // 3 means that the response is for a l2 cache -> LL:[Client, L2_Cache, L1_Cache]
         // other values are not allowed
 
-        if(criticalWriteResponseMsg.getPathSize() != 2 && criticalWriteResponseMsg.getPathSize() != 3){
+        if(!criticalWriteResponseMsg.getPath().isEmpty() && criticalWriteResponseMsg.getPathSize() != 2 && criticalWriteResponseMsg.getPathSize() != 3){
             log.info("[{} CACHE {}] Probably wrong route!", getCacheType().toString(), String.valueOf(getID()));
             //TODO: send special error message to client or master
         }
 
-        //create new path without the current cache
-        Stack<ActorRef> newPath = new Stack<>();
-        newPath.addAll(criticalWriteResponseMsg.getPath());
-
-        //remove last element from path, which is the current cache
-        newPath.pop();
+        //create new path without the current cache (last element of the path)
+        RequestPath newPath = responsePath(criticalWriteResponseMsg.getPath());
 
         log.info("[{} CACHE {}] after pop, NEW PATH: {}", getCacheType().toString(), String.valueOf(getID()), newPath.toString());
 
         //child can be a client or a l2 cache
-        ActorRef child = newPath.get(newPath.size()-1); //get (not remove) last element from path
+        ActorRef child = nextHop(newPath, criticalWriteResponseMsg.getRequestId());
+        if (child == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(criticalWriteResponseMsg.getRequestId()));
+            return;
+        }
 
 
         // check if child is between the children of this cache
@@ -1084,8 +1772,9 @@ public class Cache extends AbstractActor{
         }
         */
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
+
+        // the key is being written, reads must reach the database again
+        this.negativeCache.invalidate(proposedWriteMsg.getKey());
 
         // check if the proposed value is already present in the tmpWriteData
         if(tmpWriteData.containsKey(proposedWriteMsg.getKey())) {
@@ -1100,7 +1789,7 @@ public class Cache extends AbstractActor{
             log.info("[{} CACHE {}] Stored proposed key-value {}:{} in tmpWriteData", getCacheType().toString(), String.valueOf(getID()), proposedWriteMsg.getKey(), proposedWriteMsg.getValue());
 
             // clear the key on this.data
-            this.data.remove(proposedWriteMsg.getKey());
+            removeData(proposedWriteMsg.getKey());
             log.info("[{} CACHE {}] Removed key {} from data", getCacheType().toString(), String.valueOf(getID()), proposedWriteMsg.getKey());
 
         }
@@ -1151,8 +1840,6 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received accepted write msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), msg.getKey(), msg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         //System.out.println("[cache] before removal , childrenToAcceptWriteByKey: " + childrenToAcceptWriteByKey.toString());
         // remove from the set of caches that must respond to this cache
@@ -1171,7 +1858,7 @@ public class Cache extends AbstractActor{
             // reason: if a L2 cache do not respond, the db will timeout and the crit_write will be aborted
             // therefore in this way, we do not throw away the data for a bad crit_write caused by our children
             // we try to minimize the data loss for a bad crit_write
-            this.data.remove(msg.getKey());
+            removeData(msg.getKey());
             log.info("[{} CACHE {}] Removed key {} from data", getCacheType().toString(), String.valueOf(getID()), msg.getKey());
 
             // all children have responded, send AcceptedWriteMsg to database
@@ -1190,8 +1877,8 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received apply write msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), applyWriteMsg.getKey(), applyWriteMsg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
+
+        this.negativeCache.invalidate(applyWriteMsg.getKey());
 
         // add data and remove key from temporary write structure
         if(tmpWriteData.containsKey(applyWriteMsg.getKey())){
@@ -1251,8 +1938,6 @@ public class Cache extends AbstractActor{
     public void onConfirmedWriteMsg(ConfirmedWriteMsg msg) {
         log.info("[{} CACHE {}] Received confirmed write msg; key:{}, value:{}", getCacheType().toString(), String.valueOf(getID()), msg.getKey(), msg.getValue());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         /*
         System.out.println(getCacheType());
@@ -1297,8 +1982,6 @@ public class Cache extends AbstractActor{
     public void onDropTmpWriteDataMsg(DropTmpWriteDataMsg msg){
         log.info("[{} CACHE {}] Received drop tmp write data msg", getCacheType().toString(), String.valueOf(getID()));
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         tmpWriteData.remove(msg.getKey());
         log.info("[{} CACHE {}] Removed key:{} from temporary write structure", getCacheType().toString(), String.valueOf(getID()), msg.getKey());
@@ -1311,9 +1994,42 @@ public class Cache extends AbstractActor{
         }
     }
 
+    // ----------OVERLOAD LOGIC----------
+
+    // the parent (L1 cache or database) shed the request since its mailbox was full
+    // the request is over for this cache: the overloaded response goes down the path of the request,
+    // up to the client, that backs off and sends the request again
+    private void onOverloadedResponseMsg(OverloadedResponseMsg msg) {
+
+        log.info("[{} CACHE {}] Received overloaded response msg for request {} from {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(msg.getRequestId()), getSender().path().name());
+
+        if (getCacheType() == TYPE.L2 && hedgeShed(msg.getRequestId())) {
+            return;
+        }
+
+        Request request = this.requests.get(msg.getRequestId());
+
+        RequestPath newPath = responsePath(msg.getPath());
+        ActorRef destination = nextHop(newPath, msg.getRequestId());
+        if (destination == null) {
+            log.error("[{} CACHE {}] No route for the response to request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(msg.getRequestId()));
+            return;
+        }
+
+        destination.tell(new OverloadedResponseMsg(newPath, msg.getRequestId()), getSelf());
+        log.info("[{} CACHE {}] Sent overloaded response msg to {}", getCacheType().toString(), String.valueOf(getID()), destination.path().name());
+
+        this.requests.complete(msg.getRequestId());
+        cancelTimeout(msg.getRequestId());
+
+        if (request != null && request.getType().equals("read")) {
+            overloadParkedReads(request.getKey(), msg.getRequestId());
+        }
+    }
+
     // ----------CONNECTION MESSAGE LOGIC----------
 
-    // this message can be received only by L2 caches, from clients
+    // this message is received by L2 caches from clients, and by L1 caches from orphaned L2 caches (sibling failover)
     private void onRequestConnectionMsg(RequestConnectionMsg msg) {
         log.info("[{} CACHE {}] Received request connection msg from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
         addChild(getSender());
@@ -1324,6 +2040,7 @@ public class Cache extends AbstractActor{
     }
 
     // this is the case when a L1 cache crashes and so a L2 cache child tries to connect to the database
+    // (or to another L1 cache, with sibling failover)
     // therefore, this business logic will be executed ONLY by L2 caches
     public void onResponseConnectionMsg(ResponseConnectionMsg msg){
 
@@ -1331,9 +2048,6 @@ public class Cache extends AbstractActor{
         if(msg.getResponse().equals("ACCEPTED")){
             log.info("[{} CACHE {}] Connection accepted", getCacheType().toString(), String.valueOf(getID()));
 
-            int delay = 0;
-            addDelayInSeconds(delay);
-            log.info("[{} CACHE {}] Delayed by {} seconds", getCacheType().toString(), String.valueOf(getID()), String.valueOf(delay));
 
             // since, unlike the clients, caches do not perform only 1 requests at time
             // we must retry all requests that are not yet completed
@@ -1349,6 +2063,154 @@ public class Cache extends AbstractActor{
         }
     }
 
+    // this logic is executed only by L2 caches, msg arrives from a recovered L1 cache
+    // a L2 cache connected to the database (or to another L1 cache) since the crash of its home parent goes back
+    // to it, so that the load of the database goes back to normal; the requests already sent to the temporary
+    // parent are answered by it
+    // a temporary parent (an L1 cache that adopted this L2 cache, then crashed) is only asked to forget this cache
+    private void onParentRecoveredMsg(ParentRecoveredMsg msg) {
+        log.info("[{} CACHE {}] Received parent recovered msg from {}", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+
+        if (getCacheType() != TYPE.L2) {
+            return;
+        }
+        if (!getSender().equals(this.homeParent)) {
+            log.info("[{} CACHE {}] {} is not the home parent, ignoring message", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+            if (!getSender().equals(getParent())) {
+                getSender().tell(new RequestDisconnectionMsg("L2"), getSelf());
+            }
+            return;
+        }
+
+        // the home parent recovered while a new parent was being selected: the L2 cache stays with it,
+        // and the requests sent to it while it was crashed are sent again
+        if (this.siblingLoads != null) {
+            getTimers().cancel("select-parent");
+            this.siblingLoads = null;
+            log.info("[{} CACHE {}] Selection of a new parent cancelled", getCacheType().toString(), String.valueOf(getID()));
+            retryRequests();
+            this.failedParent = null;
+            return;
+        }
+
+        if (getParent().equals(this.homeParent)) {
+            log.info("[{} CACHE {}] Already connected to {}, ignoring message", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+            return;
+        }
+
+        ActorRef previousParent = getParent();
+        setParent(this.homeParent);
+        this.failedParent = null;
+        previousParent.tell(new RequestDisconnectionMsg("L2"), getSelf());
+        log.info("[{} CACHE {}] Went back to parent {}, sent request disconnection msg to " + previousParent.path().name(), getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+    }
+
+    // this logic is executed only by L1 caches, msg arrives from a L2 cache adopted after the crash of its
+    // L1 parent, that went back to it: fills and critical writes are no longer sent to it
+    private void onRequestDisconnectionMsg(RequestDisconnectionMsg msg) {
+        removeChild(getSender());
+        log.info("[{} CACHE {}] Removed {} as a child", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+    }
+
+    // ----------SIBLING FAILOVER LOGIC----------
+
+    // this logic is executed only by L2 caches, when the parent stopped answering (destination is the actor
+    // that did not answer): with sibling failover the L1 caches are asked for their load and the least loaded one
+    // becomes the new parent, otherwise the L2 cache connects to the database
+    // the requests pending on the failed parent are retried on the new parent once the connection is accepted
+    private void failover(String destination) {
+        // a late timeout of a request sent to a parent already replaced
+        if (!getParent().equals(getDatabase()) && !destination.equals(getParent().path().name())) {
+            log.info("[{} CACHE {}] Parent {} already replaced, no failover", getCacheType().toString(), String.valueOf(getID()), destination);
+            return;
+        }
+        // the new parent is being selected
+        if (this.siblingLoads != null) {
+            return;
+        }
+
+        recordFailedParent();
+        Set<ActorRef> candidates = candidateParents();
+        if (!this.siblingFailover || getParent().equals(getDatabase()) || candidates.isEmpty()) {
+            connectToDatabase();
+            return;
+        }
+
+        this.siblingLoads = new HashMap<>();
+        for (ActorRef l1Cache : candidates) {
+            l1Cache.tell(new LoadRequestMsg(), getSelf());
+        }
+        getTimers().startSingleTimer("select-parent", new SelectParentMsg(), Duration.ofMillis(this.siblingLoadTimeout));
+        log.info("[{} CACHE {}] Asked the load of {} L1 caches", getCacheType().toString(), String.valueOf(getID()), String.valueOf(candidates.size()));
+    }
+
+    // the L1 caches that can adopt this L2 cache: all but the failed ones
+    private Set<ActorRef> candidateParents() {
+        Set<ActorRef> candidates = new HashSet<>(this.l1Caches);
+        candidates.remove(getParent());
+        candidates.remove(this.failedParent);
+        return candidates;
+    }
+
+    private void connectToDatabase() {
+        log.info("[{} CACHE {}] Connecting to DATABASE", getCacheType().toString(), String.valueOf(getID()));
+        setParent(getDatabase());
+        getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+    }
+
+    // this logic is executed only by L1 caches, msg arrives from an orphaned L2 cache
+    private void onLoadRequestMsg(LoadRequestMsg msg) {
+        getSender().tell(new LoadResponseMsg(this.requests.size(), this.children.size()), getSelf());
+    }
+
+    private void onLoadResponseMsg(LoadResponseMsg msg) {
+        // a late response, the new parent has already been selected
+        if (this.siblingLoads == null) {
+            return;
+        }
+        log.info("[{} CACHE {}] Load of {}: " + msg.getPendingRequests() + " requests, " + msg.getChildren() + " children", getCacheType().toString(), String.valueOf(getID()), getSender().path().name());
+        this.siblingLoads.put(getSender(), msg);
+
+        // every L1 cache answered, no need to wait for the timer
+        if (this.siblingLoads.size() == candidateParents().size()) {
+            selectParent();
+        }
+    }
+
+    private void onSelectParentMsg(SelectParentMsg msg) {
+        if (this.siblingLoads != null) {
+            selectParent();
+        }
+    }
+
+    // the L1 caches that did not answer in time are considered crashed
+    // the least loaded one is the one with the fewest requests in progress, then with the fewest children
+    private void selectParent() {
+        getTimers().cancel("select-parent");
+
+        ActorRef newParent = null;
+        LoadResponseMsg newParentLoad = null;
+        for (Map.Entry<ActorRef, LoadResponseMsg> entry : this.siblingLoads.entrySet()) {
+            LoadResponseMsg load = entry.getValue();
+            if (newParentLoad == null
+                    || load.getPendingRequests() < newParentLoad.getPendingRequests()
+                    || (load.getPendingRequests() == newParentLoad.getPendingRequests() && load.getChildren() < newParentLoad.getChildren())) {
+                newParent = entry.getKey();
+                newParentLoad = load;
+            }
+        }
+        this.siblingLoads = null;
+
+        if (newParent == null) {
+            log.info("[{} CACHE {}] No L1 cache answered", getCacheType().toString(), String.valueOf(getID()));
+            connectToDatabase();
+            return;
+        }
+        log.info("[{} CACHE {}] Connecting to {}", getCacheType().toString(), String.valueOf(getID()), newParent.path().name());
+        setParent(newParent);
+        getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+    }
+
     // ----------RECOVERY PROCEDURE MESSAGE LOGIC----------
 
     // this logic is executed only by L2 caches
@@ -1356,23 +2218,14 @@ public class Cache extends AbstractActor{
     private void onRequestDataRecoverMsg (RequestDataRecoverMsg msg){
         log.info("[{} CACHE {}] Received request data recover msg from {}", getCacheType(), getID(), getSender().path().name());
 
-        /*
-        if(this.getID() == 1){
-            System.out.println("Adding delay, on the CHOSEN cache");
-            int delay = 200;
-            addDelayInSeconds(delay);
-            log.info("[{} CACHE {}] Added delay of {} seconds", getCacheType().toString(), String.valueOf(getID()), String.valueOf(delay));
-        }
-
-         */
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         // optimization: we exclude from recovery the keys currently involved in a critical write, if any
         // difference between getData() map and tmpWriteData map
-        Map<Integer, Integer> dataOnCache = new HashMap<>(getData());
-        dataOnCache.keySet().removeAll(tmpWriteData.keySet());
+        Map<Integer, Integer> dataOnCache = getData().toMap();
+        for (int key : tmpWriteData.keys()) {
+            dataOnCache.remove(key);
+        }
 
         // L2 cache will respond with all the data it has, except for the keys currently involved in a critical write
         getSender().tell(new ResponseDataRecoverMsg(dataOnCache, getParent()), getSelf());
@@ -1382,8 +2235,6 @@ public class Cache extends AbstractActor{
     private void onResponseDataRecoverMsg (ResponseDataRecoverMsg msg){
         log.info("[{} CACHE {}] Received response data recover msg from {}", getCacheType(), getID(), getSender().path().name());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         if(!this.isRecovering) {
             log.info("[{} CACHE {}] Not recovering, ignoring message", getCacheType(), getID());
@@ -1415,6 +2266,7 @@ public class Cache extends AbstractActor{
 
             // all children have responded, recoveredKeys contains all the keys that need to be recovered
             this.isWaitingForKeys = false;
+            getTimers().cancel("response_data_recover");
 
             // ask the database for the "fresh" values of the recovered keys
             HashSet<Integer> recoveredKeysToSend = new HashSet<>(this.recoveredKeys);
@@ -1433,8 +2285,6 @@ public class Cache extends AbstractActor{
     private void onResponseUpdatedDataMsg (ResponseUpdatedDataMsg msg){
         log.info("[{} CACHE {}] Received response updated data msg from {}", getCacheType(), getID(), getSender().path().name());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         // store the data received from the db
         System.out.println("Received data from db (ResponseUpdatedDataMsg): " + msg.getData().toString());
@@ -1445,6 +2295,12 @@ public class Cache extends AbstractActor{
         this.isRecovering = false;
         log.info("[{} CACHE {}] Cache is no longer recovering", getCacheType(), getID());
 
+        // the children that moved to the database during the crash can come back
+        for (ActorRef child : getChildren()) {
+            child.tell(new ParentRecoveredMsg(), getSelf());
+        }
+        log.info("[{} CACHE {}] Sent parent recovered msg to children", getCacheType(), getID());
+
 
         // (extra step): update the data of the children (L2 caches), if needed
         // since we just contacted the db, which is the source of truth
@@ -1508,8 +2364,6 @@ public class Cache extends AbstractActor{
     private void onUpdateDataMsg (UpdateDataMsg msg){
         log.info("[{} CACHE {}] Received update data msg from {}", getCacheType(), getID(), getSender().path().name());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         // we update keys, we do not add new ones, the check is done before by the L1 cache parent
         addData(msg.getData());
@@ -1531,8 +2385,6 @@ public class Cache extends AbstractActor{
 
         log.info("[{} CACHE {}] Received recover msg", getCacheType(), getID());
 
-        addNetworkDelay();
-        log.info("[{} CACHE {}] Added network delay", getCacheType().toString(), String.valueOf(getID()));
 
         if (isCrashed()) {
             recover(); // 1st possibility to place the recover() call
@@ -1609,18 +2461,21 @@ public class Cache extends AbstractActor{
             return;
         }
 
+        // the request is sent again or answered late, its latency is not sampled
+        this.rtt.forget(msg.getRequestId());
+
         // standard timeout msg, related to the 4 operations, but request is not present
-        if (!this.requests.containsKey(msg.getRequestId())) {
+        // since answered requests are removed from the table, this also covers fulfilled requests
+        if (!this.requests.contains(msg.getRequestId())) {
             log.info("[{} CACHE {}] Received timeout msg for request not present at the moment", getCacheType().toString(), String.valueOf(getID()));
             log.info("[{} CACHE {}] Ignoring timeout msg", getCacheType().toString(), String.valueOf(getID()));
             return;
         }
 
-        // since a cache can receive multiple requests at the same time, from different clients
-        // check if requestId in hashmap of requests is already fulfilled
-        if (this.requests.get(msg.getRequestId()).isFulfilled()) {
-            log.info("[{} CACHE {}] Received timeout msg for fulfilled request", getCacheType().toString(), String.valueOf(getID()));
-            log.info("[{} CACHE {}] Ignoring timeout msg", getCacheType().toString(), String.valueOf(getID()));
+        // a request sent to the database before going back to the recovered L1 parent:
+        // the database does not crash, and the timeout says nothing about the current parent
+        if (msg.getConnectionDestination().equals(getDatabase().path().name()) && !getParent().equals(getDatabase())) {
+            log.info("[{} CACHE {}] Received timeout msg for a request sent to the database, ignoring it", getCacheType().toString(), String.valueOf(getID()));
             return;
         }
 
@@ -1631,15 +2486,38 @@ public class Cache extends AbstractActor{
 
                 // if L2 cache, connect to database
                 if(getCacheType().equals(TYPE.L2)){
-                    log.info("[{} CACHE {}] Connecting to DATABASE", getCacheType().toString(), String.valueOf(getID()));
-                    setParent(getDatabase());
-                    getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+                    failover(msg.getConnectionDestination());
 
                     // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more
                     long requestId = msg.getRequestId();
                     ActorRef client = this.requests.get(requestId).getRequester();
                     TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
                     timeoutElapsedMsg.setType("read");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
+                    client.tell(timeoutElapsedMsg, getSelf());
+                    log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
+
+                    // the clients parked behind this request are waiting for the same response
+                    for (ReadRequestMsg follower : this.parkedReads.getOrDefault(requestId, Collections.emptyList())) {
+                        TimeoutElapsedMsg followerTimeoutElapsedMsg = new TimeoutElapsedMsg();
+                        followerTimeoutElapsedMsg.setType("read");
+                        followerTimeoutElapsedMsg.setRequestId(follower.getRequestId());
+                        nextHop(follower.getPath(), follower.getRequestId()).tell(followerTimeoutElapsedMsg, getSelf());
+                    }
+                }
+                break;
+            case "multi_read":
+                log.info("[{} CACHE {}] Received timeout msg for multi read request operation", getCacheType().toString(), String.valueOf(getID()));
+
+                // if L2 cache, connect to database
+                if(getCacheType().equals(TYPE.L2)){
+                    failover(msg.getConnectionDestination());
+
+                    // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more
+                    ActorRef client = this.requests.get(msg.getRequestId()).getRequester();
+                    TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
+                    timeoutElapsedMsg.setType("multi_read");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
                     client.tell(timeoutElapsedMsg, getSelf());
                     log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
                 }
@@ -1649,15 +2527,30 @@ public class Cache extends AbstractActor{
 
                 // if L2 cache, connect to database
                 if(getCacheType().equals(TYPE.L2)){
-                    log.info("[{} CACHE {}] Connecting to DATABASE", getCacheType().toString(), String.valueOf(getID()));
-                    setParent(getDatabase());
-                    getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+                    failover(msg.getConnectionDestination());
 
                     // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more
                     long requestId = msg.getRequestId();
                     ActorRef client = this.requests.get(requestId).getRequester();
                     TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
                     timeoutElapsedMsg.setType("write");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
+                    client.tell(timeoutElapsedMsg, getSelf());
+                    log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
+                }
+                break;
+            case "multi_write":
+                log.info("[{} CACHE {}] Received timeout msg for multi write request operation", getCacheType().toString(), String.valueOf(getID()));
+
+                // if L2 cache, connect to database
+                if(getCacheType().equals(TYPE.L2)){
+                    failover(msg.getConnectionDestination());
+
+                    // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more
+                    ActorRef client = this.requests.get(msg.getRequestId()).getRequester();
+                    TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
+                    timeoutElapsedMsg.setType("multi_write");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
                     client.tell(timeoutElapsedMsg, getSelf());
                     log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
                 }
@@ -1667,15 +2560,14 @@ public class Cache extends AbstractActor{
 
                 // if L2 cache, connect to database
                 if(getCacheType().equals(TYPE.L2)){
-                    log.info("[{} CACHE {}] Connecting to DATABASE", getCacheType().toString(), String.valueOf(getID()));
-                    setParent(getDatabase());
-                    getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+                    failover(msg.getConnectionDestination());
 
                     // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more, maybe extending the timeout
                     long requestId = msg.getRequestId();
                     ActorRef client = this.requests.get(requestId).getRequester();
                     TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
                     timeoutElapsedMsg.setType("crit_read");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
                     client.tell(timeoutElapsedMsg, getSelf());
                     log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
                 }
@@ -1685,15 +2577,14 @@ public class Cache extends AbstractActor{
 
                 // if L2 cache, connect to database
                 if(getCacheType().equals(TYPE.L2)){
-                    log.info("[{} CACHE {}] Connecting to DATABASE", getCacheType().toString(), String.valueOf(getID()));
-                    setParent(getDatabase());
-                    getParent().tell(new RequestConnectionMsg("L2"), getSelf());
+                    failover(msg.getConnectionDestination());
 
                     // tell the client that the L1 cache is not available, so this L2 is connecting to the database, so client should wait more, maybe extending the timeout
                     long requestId = msg.getRequestId();
                     ActorRef client = this.requests.get(requestId).getRequester();
                     TimeoutElapsedMsg timeoutElapsedMsg = new TimeoutElapsedMsg();
                     timeoutElapsedMsg.setType("crit_write");
+                    timeoutElapsedMsg.setRequestId(msg.getRequestId());
                     client.tell(timeoutElapsedMsg, getSelf());
                     log.info("[{} CACHE {}] Sent timeout elapsed msg to {}", getCacheType().toString(), String.valueOf(getID()), client.path().name());
                 }
@@ -1727,31 +2618,234 @@ public class Cache extends AbstractActor{
     // but since the db is always available, the L1 cache will never timeout waiting for a db response
     // private void onTimeoutElapsedMsg(TimeoutElapsedMsg msg) {}
 
+    // ----------HEDGED READS LOGIC----------
+
+    private static String hedgeKey(long requestId) {
+        return "hedge-" + requestId;
+    }
+
+    // the read is sent also to the database if the L1 parent has not answered by the p95 of the read latency
+    // no hedge until enough reads are sampled, nor when the parent is already the database
+    private void scheduleHedge(long requestId) {
+        if (!this.hedgeReads || getParent().equals(getDatabase())) {
+            return;
+        }
+        long delay = this.rtt.quantile("read", HEDGE_QUANTILE);
+        if (delay < 0) {
+            return;
+        }
+        getTimers().startSingleTimer(hedgeKey(requestId), new HedgeReadMsg(requestId, LatencyEstimator.now()), Duration.ofMillis(delay));
+    }
+
+    // the L1 parent stays the parent: only this read is sent to the database, with the same requestId
+    private void onHedgeReadMsg(HedgeReadMsg msg) {
+        Request request = this.requests.get(msg.getRequestId());
+        if (request == null || getParent().equals(getDatabase())) {
+            return;
+        }
+        ReadRequestMsg hedge = new ReadRequestMsg(request.getKey(), forwardPath(request.getPath()), msg.getRequestId());
+        getDatabase().tell(hedge, getSelf());
+        this.hedgedReads.put(msg.getRequestId(), new HedgedRead(msg.getSentAt()));
+        // sent twice, the latency of the first response does not measure the L1 parent
+        this.rtt.sent(msg.getRequestId());
+        log.info("[{} CACHE {}] Hedged read request {} to the database", getCacheType().toString(), String.valueOf(getID()), String.valueOf(msg.getRequestId()));
+    }
+
+    // true if the read response must be dropped: its request was already answered by the other response
+    // the response of the L1 parent is sampled anyway, so that the p95 keeps measuring the L1 parent
+    private boolean hedgedResponse(long requestId) {
+        HedgedRead hedged = this.hedgedReads.get(requestId);
+        if (hedged == null) {
+            return false;
+        }
+        boolean fromParent = !getSender().equals(getDatabase());
+        if (fromParent && !hedged.parentAnswered) {
+            this.rtt.sample("read", LatencyEstimator.now() - hedged.sentAt);
+        }
+        if (this.requests.contains(requestId)) {
+            // first response: the entry is kept to recognize the second one, unless the hedge was shed
+            if (fromParent && hedged.lost) {
+                this.hedgedReads.remove(requestId);
+            } else if (fromParent) {
+                hedged.parentAnswered = true;
+            }
+            return false;
+        }
+        this.hedgedReads.remove(requestId);
+        log.info("[{} CACHE {}] Dropped the late response of hedged read request {} from {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(requestId), getSender().path().name());
+        return true;
+    }
+
+    // true if the overloaded response is the database shedding the hedge of a read: the hedge is lost,
+    // but the read was also sent to the L1 parent, whose response answers it
+    // (without this, an overloaded database would make hedged reads back off and retry)
+    private boolean hedgeShed(long requestId) {
+        HedgedRead hedged = this.hedgedReads.get(requestId);
+        if (hedged == null || !getSender().equals(getDatabase()) || getParent().equals(getDatabase())) {
+            return false;
+        }
+        if (this.requests.contains(requestId)) {
+            hedged.lost = true;
+        } else {
+            // the L1 parent already answered
+            this.hedgedReads.remove(requestId);
+        }
+        log.info("[{} CACHE {}] The database shed the hedge of read request {}", getCacheType().toString(), String.valueOf(getID()), String.valueOf(requestId));
+        return true;
+    }
+
+    // ----------HEARTBEAT MESSAGE LOGIC----------
+
+    private void scheduleHeartbeat() {
+        if (this.heartbeatInterval <= 0) {
+            return;
+        }
+        resetParentDetector();
+        cancelHeartbeat();
+        this.lastHeartbeatTick = PhiAccrualFailureDetector.now();
+        this.heartbeatTick = getContext().getSystem().scheduler().scheduleWithFixedDelay(
+            Duration.ofMillis(this.heartbeatInterval),
+            Duration.ofMillis(this.heartbeatInterval),
+            getSelf(),
+            new HeartbeatTickMsg(),
+            getContext().getDispatcher(),
+            getSelf()
+        );
+    }
+
+    private void cancelHeartbeat() {
+        if (this.heartbeatTick != null) {
+            this.heartbeatTick.cancel();
+            this.heartbeatTick = null;
+        }
+    }
+
+    @Override
+    public void postStop() {
+        cancelHeartbeat();
+    }
+
+    private void resetParentDetector() {
+        this.parentSuspected = false;
+        if (this.parentDetector != null) {
+            this.parentDetector.reset(PhiAccrualFailureDetector.now());
+        }
+    }
+
+    private void onHeartbeatTickMsg(HeartbeatTickMsg msg) {
+        getParent().tell(new HeartbeatMsg(), getSelf());
+
+        long now = PhiAccrualFailureDetector.now();
+        long sinceLastTick = now - this.lastHeartbeatTick;
+        this.lastHeartbeatTick = now;
+        // this cache was busy (e.g. a backlog of requests in a fifo mailbox): the heartbeats were not sent
+        // and the acks were not handled, the gap is not the fault of the parent
+        if (sinceLastTick > (long) LATE_TICK_FACTOR * this.heartbeatInterval) {
+            this.parentDetector.resume(now);
+            log.info("[{} CACHE {}] Heartbeat tick late by " + (sinceLastTick - this.heartbeatInterval) + " ms, parent {} not checked", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+            return;
+        }
+        if (this.parentSuspected || this.parentDetector.isAvailable(now)) {
+            return;
+        }
+        this.parentSuspected = true;
+        log.info("[{} CACHE {}] Parent {} suspected of being crashed, phi " + String.format("%.2f", this.parentDetector.phi(now)), getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+
+        // the database never crashes, a L1 cache only reports it
+        // the L1 parent is suspected before a request times out: the L2 cache fails over like after a timeout
+        if (getCacheType() == TYPE.L2 && !getParent().equals(getDatabase())) {
+            failover(getParent().path().name());
+        }
+    }
+
+    // a child (L2 cache of this L1 cache, or a L2 cache connected directly to the database) checks this cache
+    private void onHeartbeatMsg(HeartbeatMsg msg) {
+        getSender().tell(new HeartbeatAckMsg(), getSelf());
+    }
+
+    private void onHeartbeatAckMsg(HeartbeatAckMsg msg) {
+        // a late ack of a previous parent does not tell anything about the current one
+        if (this.parentDetector == null || !getSender().equals(getParent())) {
+            return;
+        }
+        this.parentDetector.heartbeat(PhiAccrualFailureDetector.now());
+        if (this.parentSuspected) {
+            this.parentSuspected = false;
+            log.info("[{} CACHE {}] Parent {} answering again", getCacheType().toString(), String.valueOf(getID()), getParent().path().name());
+        }
+    }
+
+    // ----------EXPIRY MESSAGE LOGIC----------
+
+    // incremental sweep: each tick visits a bounded share of the slots of the expiries map
+    // so that the actor is never stalled by a full scan of a large cache, and every key is visited
+    // at least once every EXPIRY_SWEEP_TICKS ticks
+    private void onExpirySweepMsg(ExpirySweepMsg msg) {
+        int slots = Math.max(EXPIRY_SWEEP_SLOTS, (this.expiries.slots() + EXPIRY_SWEEP_TICKS - 1) / EXPIRY_SWEEP_TICKS);
+        if (this.expiredKeys.length < slots + 1) {
+            this.expiredKeys = new int[slots + 1];
+        }
+        int now = expiryClock();
+        this.expiredCount = 0;
+        this.expirySweepCursor = this.expiries.scan(this.expirySweepCursor, slots, (key, expiration) -> {
+            if (now - expiration >= 0) {
+                this.expiredKeys[this.expiredCount++] = key;
+            }
+        });
+
+        // keys are removed after the scan, since the map must not be modified while it is visited
+        for (int i = 0; i < this.expiredCount; i++) {
+            removeData(this.expiredKeys[i]);
+        }
+        if (this.expiredCount > 0) {
+            log.info("[{} CACHE {}] Expiry sweep removed {} keys", this.type_of_cache.toString(), String.valueOf(this.id), String.valueOf(this.expiredCount));
+        }
+    }
+
     // ----------INFO MESSAGE LOGIC----------
 
     private void onInfoMsg (InfoMsg msg){
         log.info("[{} CACHE {}] Parent: {}", getCacheType(), getID(), getParent().path().name());
+        log.info("[{} CACHE {}] Items: {}/{}", getCacheType(), getID(), getData().size(), getCapacity());
+        logMailboxDepth();
+        logAdaptiveTimeouts();
+        log.info("[{} CACHE {}] Read hits: " + this.readHits + ", read misses: " + this.readMisses + ", hit ratio: {}",
+                getCacheType(), getID(), String.format("%.3f", getHitRatio()));
         log.info("[{} CACHE {}] Children: ", getCacheType(), getID());
         for (ActorRef child : getChildren()) {
             log.info("[{} CACHE {}] {} ", getCacheType(), getID(), child.path().name());
         }
         log.info("[{} CACHE {}] Data: ", getCacheType(), getID());
-        for (Map.Entry<Integer, Integer> entry : getData().entrySet()) {
-            log.info("[{} CACHE {}] Key = {}, Value = {} ",
-                    getCacheType(), getID(), entry.getKey(), entry.getValue());
+        getData().forEach((key, value) -> log.info("[{} CACHE {}] Key = {}, Value = {} ",
+                getCacheType(), getID(), key, value));
+    }
+
+    private void logMailboxDepth() {
+        String depth = PriorityMailbox.describe(getSelf());
+        if (depth != null) {
+            log.info("[{} CACHE {}] Mailbox depth: {}", getCacheType(), getID(), depth);
+        }
+    }
+
+    private void logAdaptiveTimeouts() {
+        String timeouts = this.rtt.toString();
+        if (!timeouts.isEmpty()) {
+            log.info("[{} CACHE {}] Adaptive timeouts: {}", getCacheType(), getID(), timeouts);
         }
     }
 
     private void onInfoItemsMsg (InfoItemsMsg msg){
         //log.info("[{} CACHE {}] Data: ", getCacheType(), getID());
+        log.info("[{} CACHE {}] Hit ratio: {} (hits: " + this.readHits + ", misses: " + this.readMisses + ")",
+                getCacheType(), getID(), String.format("%.3f", getHitRatio()));
+        logMailboxDepth();
+        logAdaptiveTimeouts();
         if (getData().size() == 0) {
             log.info("[{} CACHE {}] Data: cache is empty", getCacheType(), getID());
             return;
         }
-        for (Map.Entry<Integer, Integer> entry : getData().entrySet()) {
-            log.info("[{} CACHE {}] Data ==> Key = {}, Value = {} ",
-                    getCacheType(), getID(), entry.getKey(), entry.getValue());
-        }
+        getData().forEach((key, value) -> log.info("[{} CACHE {}] Data ==> Key = {}, Value = {} ",
+                getCacheType(), getID(), key, value));
     }
 
 }
@@ -8,6 +8,57 @@ public class CacheConfiguration {
 
     private int customNum;
 
+    // maximum number of keys stored by each cache of this level, 0 means unbounded
+    private int capacity = 0;
+
+    // policy used to choose the key to evict when the cache is full: lru, lfu, fifo
+    private String evictionPolicy = "lru";
+
+    // W-TinyLFU admission filter in front of the cache, if not set it is enabled for L2 caches only
+    private Boolean admissionFilter = null;
+
+    // default time to live of the cached keys (seconds), 0 means that keys never expire
+    // a write request can ask for a different ttl for the written key
+    private int ttl = 0;
+
+    // interval between two incremental sweeps of the expired keys (seconds), 0 means expiry is checked on reads only
+    private int expirySweepInterval = 1;
+
+    // negative cache of the keys that are missing in the database: ttl (seconds) and max number of keys
+    // a ttl or a capacity of 0 disables it
+    private int negativeTtl = 0;
+    private int negativeCapacity = 0;
+
+    // requests not answered after this time (seconds) are dropped from the request table
+    private int staleRequestAge = 60;
+
+    // where the cache keeps its data: heap or offheap (direct memory, not scanned by the garbage collector)
+    private String storage = "heap";
+
+    // default (fifo) or priority, see PriorityMailbox
+    private String mailbox = "default";
+
+    // requests waiting in the mailbox before new ones are shed with an overloaded response, 0 means unbounded
+    private int mailboxCapacity = 0;
+
+    // interval between two heartbeats sent to the parent (milliseconds), 0 disables the failure detector
+    private int heartbeatInterval = 0;
+
+    // phi above which the parent is suspected of being crashed, see PhiAccrualFailureDetector
+    private double phiThreshold = 8.0;
+
+    // extra delay of the heartbeats accepted before the parent is suspected (milliseconds)
+    private int acceptableHeartbeatPause = 0;
+
+    // L2 caches only: a read miss not answered by the L1 parent within the p95 of the read latency
+    // is sent also to the database, the first response is used
+    private boolean hedgeReads = false;
+
+    // L2 caches only: when the L1 parent crashes, connect to the least loaded of the other L1 caches
+    // answering within siblingLoadTimeout milliseconds, the database is used only if none answers
+    private boolean siblingFailover = false;
+    private int siblingLoadTimeout = 200;
+
     private List<TimeoutConfiguration> timeouts = new ArrayList<>();
 
     public int getMaxNum() {
@@ -26,13 +77,149 @@ public class CacheConfiguration {
         this.customNum = customNum;
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public String getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public void setEvictionPolicy(String evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public Boolean getAdmissionFilter() {
+        return admissionFilter;
+    }
+
+    public void setAdmissionFilter(Boolean admissionFilter) {
+        this.admissionFilter = admissionFilter;
+    }
+
+    public int getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getExpirySweepInterval() {
+        return expirySweepInterval;
+    }
+
+    public void setExpirySweepInterval(int expirySweepInterval) {
+        this.expirySweepInterval = expirySweepInterval;
+    }
+
+    public int getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(int negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public int getNegativeCapacity() {
+        return negativeCapacity;
+    }
+
+    public void setNegativeCapacity(int negativeCapacity) {
+        this.negativeCapacity = negativeCapacity;
+    }
+
+    public int getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(int heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public double getPhiThreshold() {
+        return phiThreshold;
+    }
+
+    public void setPhiThreshold(double phiThreshold) {
+        this.phiThreshold = phiThreshold;
+    }
+
+    public int getAcceptableHeartbeatPause() {
+        return acceptableHeartbeatPause;
+    }
+
+    public void setAcceptableHeartbeatPause(int acceptableHeartbeatPause) {
+        this.acceptableHeartbeatPause = acceptableHeartbeatPause;
+    }
+
+    public boolean getHedgeReads() {
+        return hedgeReads;
+    }
+
+    public void setHedgeReads(boolean hedgeReads) {
+        this.hedgeReads = hedgeReads;
+    }
+
+    public boolean getSiblingFailover() {
+        return siblingFailover;
+    }
+
+    public void setSiblingFailover(boolean siblingFailover) {
+        this.siblingFailover = siblingFailover;
+    }
+
+    public int getSiblingLoadTimeout() {
+        return siblingLoadTimeout;
+    }
+
+    public void setSiblingLoadTimeout(int siblingLoadTimeout) {
+        this.siblingLoadTimeout = siblingLoadTimeout;
+    }
+
+    public int getStaleRequestAge() {
+        return staleRequestAge;
+    }
+
+    public void setStaleRequestAge(int staleRequestAge) {
+        this.staleRequestAge = staleRequestAge;
+    }
+
+    public String getStorage() {
+        return storage;
+    }
+
+    public void setStorage(String storage) {
+        this.storage = storage;
+    }
+
+    public String getMailbox() {
+        return mailbox;
+    }
+
+    public void setMailbox(String mailbox) {
+        this.mailbox = mailbox;
+    }
+
+    public int getMailboxCapacity() {
+        return mailboxCapacity;
+    }
+
+    public void setMailboxCapacity(int mailboxCapacity) {
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
     public List<TimeoutConfiguration> getTimeouts() {
         return timeouts;
     }
 
     public void setTimeouts(List<TimeoutConfiguration> timeouts) {
         for(TimeoutConfiguration timeout: timeouts){
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
@@ -42,7 +229,7 @@ public class CacheConfiguration {
     public CacheConfiguration(int maxNum, List<TimeoutConfiguration> timeouts) {
         this.maxNum = maxNum;
         for (TimeoutConfiguration timeout : timeouts) {
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
@@ -1,19 +1,18 @@
 package it.unitn.ds1;
 
-import akka.actor.AbstractActor;
+import akka.actor.AbstractActorWithTimers;
 import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
-import scala.concurrent.duration.*;
 
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import it.unitn.ds1.Message.*;
 
-public class Client extends AbstractActor {
+public class Client extends AbstractActorWithTimers {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
@@ -24,27 +23,36 @@ public class Client extends AbstractActor {
     private ActorRef parent;
     private boolean isConnectedToParent = true;
 
-    // one-element list timeouts_to_skip
-    // values could be: "read", "write", "crit_read", "crit_write"
-    // "connection" is not considered since the "connection" operation is carried out by only one cache
-    // therefore there is no need to wait more time due to an upper level timeout
-    private List<String> timeouts_to_skip = new ArrayList<>();
-
     private HashMap<String, Integer> timeouts = new HashMap<>();
 
+    // timeouts of the operations, adapted to the measured latency
+    private final LatencyEstimator rtt = new LatencyEstimator();
+
+    // seconds waited before retrying an operation on a new L2 cache
+    private static final int RETRY_DELAY = 1;
+
+    // milliseconds waited before retrying an operation shed by an overloaded cache or database (first overload)
+    private final int overloadBackoff;
+    // the backoff doubles at every overload of the same operation, up to 2^MAX_BACKOFF_EXPONENT times overloadBackoff
+    private static final int MAX_BACKOFF_EXPONENT = 6;
+
     private Random rnd = new Random();
     private String classString = String.valueOf(getClass());
 
-    // operations done by the client: read, write, crit_read, crit_write
+    // operations done by the client: read, write, crit_read, crit_write, multi_read, multi_write
     public class ClientOperation {
         private final String operation;
         private final int key;
         private int value;
+        private int[] keys; // only for multi operations, key is the first one
+        private int[] values; // only for multi operations, values[i] is the value of keys[i]
+        private int ttl; // only for write operations, 0 means the default ttl of the caches
         private boolean finished;
         private boolean success;
         private final long startTime = System.currentTimeMillis();
         private long endTime;
         private long firstRequestId; // equal to the id of the first request sent for this operation
+        private int overloads; // overloaded responses received for this operation
 
         public ClientOperation(String operation, int key, long firstRequestId) {
             this.operation = operation;
@@ -66,6 +74,18 @@ public class Client extends AbstractActor {
             return value;
         }
 
+        public int getTtl() {
+            return ttl;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
         public boolean isFinished() {
             return finished;
         }
@@ -82,6 +102,14 @@ public class Client extends AbstractActor {
             return firstRequestId;
         }
 
+        public int getOverloads() {
+            return overloads;
+        }
+
+        public void overloaded() {
+            this.overloads++;
+        }
+
         public void setEndTime() {
             this.endTime = System.currentTimeMillis();
         }
@@ -96,6 +124,18 @@ public class Client extends AbstractActor {
             this.value = value;
         }
 
+        public void setTtl(int ttl) {
+            this.ttl = ttl;
+        }
+
+        public void setKeys(int[] keys) {
+            this.keys = keys;
+        }
+
+        public void setValues(int[] values) {
+            this.values = values;
+        }
+
         public void setFinished(boolean finished) {
             this.finished = finished;
         }
@@ -105,6 +145,9 @@ public class Client extends AbstractActor {
         }
 
         public String toString() {
+            if (keys != null) {
+                return "{ Operation: " + operation + ", Keys: " + Arrays.toString(keys) + ", Values: " + Arrays.toString(values) + ", Finished: " + finished  + ", Success: " + success + ", Start Time: " + startTime + ", End Time: " + endTime + ", Duration: " + getDuration() + " }";
+            }
             return "{ Operation: " + operation + ", Key: " + key + ", Value: " + value + ", Finished: " + finished  + ", Success: " + success + ", Start Time: " + startTime + ", End Time: " + endTime + ", Duration: " + getDuration() + " }";
         }
 
@@ -112,15 +155,35 @@ public class Client extends AbstractActor {
 
     private List<ClientOperation> operations = new ArrayList<>();
 
-    public Client(int id, ActorRef parent, List<TimeoutConfiguration> timeouts, HashSet<ActorRef> l2Caches) {
+    // operations sent and not yet answered, by requestId, in sending order
+    private final Map<Long, ClientOperation> inFlight = new LinkedHashMap<>();
+
+    // maximum number of operations in flight at the same time
+    private final int window;
+
+    // ids of the requests created by this client, unique in the whole system
+    private final RequestIdGenerator requestIds;
+
+    // simulated network latency of the incoming messages
+    private final LatencyInjector latency;
+
+    // if true, requests are sent without path and the caches route the responses with their request table
+    private final boolean hopLocalRouting;
+
+    public Client(int id, ActorRef parent, List<TimeoutConfiguration> timeouts, HashSet<ActorRef> l2Caches, List<LatencyConfiguration> latencies, boolean hopLocalRouting, int window, int overloadBackoff) {
         this.id = id;
+        this.hopLocalRouting = hopLocalRouting;
+        this.window = Math.max(1, window);
+        this.overloadBackoff = Math.max(1, overloadBackoff);
+        this.requestIds = new RequestIdGenerator(id);
+        this.latency = new LatencyInjector(getContext(), latencies, this::linkOf);
         setParent(parent);
         setTimeouts(timeouts);
         setL2_caches(l2Caches);
     }
 
-    static public Props props(int id, ActorRef parent, List<TimeoutConfiguration> timeouts, HashSet<ActorRef> l2Caches) {
-        return Props.create(Client.class, () -> new Client(id, parent, timeouts, l2Caches));
+    static public Props props(int id, ActorRef parent, List<TimeoutConfiguration> timeouts, HashSet<ActorRef> l2Caches, List<LatencyConfiguration> latencies, boolean hopLocalRouting, int window, int overloadBackoff) {
+        return Props.create(Client.class, () -> new Client(id, parent, timeouts, l2Caches, latencies, hopLocalRouting, window, overloadBackoff));
     }
 
     //getter for id
@@ -153,6 +216,7 @@ public class Client extends AbstractActor {
     public void setTimeouts(List<TimeoutConfiguration> timeouts){
         for (TimeoutConfiguration timeout: timeouts){
             this.timeouts.put(timeout.getType(), timeout.getValue());
+            this.rtt.setBounds(timeout);
         }
     }
 
@@ -168,26 +232,31 @@ public class Client extends AbstractActor {
         this.timeouts.put(type, value);
     }
 
+    // timers are keyed by request (or "connection"): starting a timer again with the same key replaces the pending one
+    // and a cancelled timer never delivers its TimeoutMsg
     public void startTimeout(String type, long requestId, String connectionDestination) {
-        log.info("[CLIENT " + id + "] Starting timeout for " + type + " operation, " + getTimeout(type) + " seconds");
-        getContext().system().scheduler().scheduleOnce(
-            Duration.create(getTimeout(type), TimeUnit.SECONDS),
-            getSelf(),
+        Duration timeout = rtt.timeout(type);
+        log.info("[CLIENT " + id + "] Starting timeout for " + type + " operation, " + timeout.toMillis() + " ms");
+        getTimers().startSingleTimer(
+            timeoutKey(type, requestId),
             new TimeoutMsg(type, requestId, connectionDestination), // the message to send
-            getContext().system().dispatcher(),
-            getSelf()
+            timeout
         );
+        rtt.sent(requestId);
+    }
 
+    public void cancelTimeout(String type, long requestId) {
+        getTimers().cancel(timeoutKey(type, requestId));
+        rtt.forget(requestId);
     }
 
-    public void addDelayInSeconds(int seconds) {
-        try {
-            log.info("[CLIENT " + id + "] Adding delay of " + seconds + " seconds");
-            Thread.sleep(seconds * 1000);
-        } catch (InterruptedException e) {
-            log.error("[CLIENT " + id + "] Error while adding delay");
-            e.printStackTrace();
-        }
+    private static String timeoutKey(String type, long requestId) {
+        return type.equals("connection") ? "connection" : "request-" + requestId;
+    }
+
+    // link of the messages received from sender, null if they are not delayed
+    private String linkOf(ActorRef sender, Object msg) {
+        return sender.equals(getParent()) || this.L2_caches.contains(sender) ? LatencyInjector.CLIENT_L2 : null;
     }
 
     /*-- Actor logic -- */
@@ -196,31 +265,62 @@ public class Client extends AbstractActor {
         log.info("[CLIENT " + id + "] Started!");
     }
 
+    // ----------OPERATION LOGIC----------
+
+    private boolean canStartOperation() {
+        return inFlight.size() < window;
+    }
+
+    // the same id is used by the caches and the database for every message of the request, retries included
+    private long nextRequestId() {
+        return requestIds.next();
+    }
+
+    private void startOperation(ClientOperation operation) {
+        operations.add(operation);
+        inFlight.put(operation.getFirstRequestId(), operation);
+    }
+
+    // the operation answered by the response with requestId, null if it is not in flight (e.g. duplicated response)
+    private ClientOperation completeOperation(long requestId) {
+        ClientOperation operation = inFlight.remove(requestId);
+        if (operation == null) {
+            log.info("[CLIENT " + id + "] Received response for request " + requestId + " not in flight, ignoring it");
+            return null;
+        }
+        rtt.answered(operation.getOperation(), requestId);
+        cancelTimeout(operation.getOperation(), requestId);
+        operation.setFinished(true);
+        operation.setEndTime();
+        return operation;
+    }
+
     // ----------SEND LOGIC----------
 
+    // path of a new request, empty with hop-local routing
+    private RequestPath requestPath() {
+        return this.hopLocalRouting ? RequestPath.EMPTY : RequestPath.of(getSelf());
+    }
+
     public void sendInitMsg(){
         InitMsg msg = new InitMsg(getSelf(), "client");
         parent.tell(msg, getSelf());
     }
 
-    public void sendReadRequestMsg(int key, int delayInSeconds){
+    public void sendReadRequestMsg(int key){
 
         log.info("[CLIENT " + id + "] Started creating read request msg, to be sent to " + getParent().path().name() + " with key " + key);
 
-        addDelayInSeconds(delayInSeconds);
-        log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
-        // assumption: client can send only 1 request at a time
-        // if last operation of the client is finished or there are no operations, add new operation
-        if ((operations.size() > 0 && operations.get(operations.size() - 1).isFinished()) || operations.size() == 0) {
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
 
-            Stack<ActorRef> path = new Stack<>();
-            path.push(getSelf());
-            long requestId = System.currentTimeMillis();
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
             ReadRequestMsg msg = new ReadRequestMsg(key, path, requestId);
             log.info("[CLIENT " + id + "] Created read request msg to be sent to " + getParent().path().name() + " with key " + key + " and requestId " + msg.getRequestId());
 
-            operations.add(new ClientOperation("read", key, requestId));
+            startOperation(new ClientOperation("read", key, requestId));
             log.info("[CLIENT " + id + "] Created new read operation");
 
             getParent().tell(msg, getSelf());
@@ -229,32 +329,66 @@ public class Client extends AbstractActor {
             startTimeout("read", requestId, getParent().path().name());
 
         } else {
-            //if last operation is not finished
-            log.info("[CLIENT " + id + "] Cannot create new read operation, last operation not finished");
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new read operation, " + inFlight.size() + " operations in flight");
+        }
+
+    }
+
+    public void sendMultiReadRequestMsg(int[] keys){
+
+        log.info("[CLIENT " + id + "] Started creating multi read request msg, to be sent to " + getParent().path().name() + " with keys " + Arrays.toString(keys));
+
+        if (keys.length == 0) {
+            log.info("[CLIENT " + id + "] Cannot create multi read operation without keys");
+            return;
+        }
+
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
+
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
+            MultiReadRequestMsg msg = new MultiReadRequestMsg(keys, path, requestId);
+
+            ClientOperation multiReadOp = new ClientOperation("multi_read", keys[0], requestId);
+            multiReadOp.setKeys(keys);
+            startOperation(multiReadOp);
+            log.info("[CLIENT " + id + "] Created new multi read operation");
+
+            getParent().tell(msg, getSelf());
+            log.info("[CLIENT " + id + "] Sent multi read request msg! to " + getParent().path().name());
+
+            startTimeout("multi_read", requestId, getParent().path().name());
+
+        } else {
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new multi read operation, " + inFlight.size() + " operations in flight");
         }
 
     }
 
-    public void sendWriteRequestMsg(int key, int value, int delayInSeconds){
+    public void sendWriteRequestMsg(int key, int value, int ttl){
 
         log.info("[CLIENT " + id + "] Started creating write request msg, to be sent to " + getParent().path().name() + " with key " + key + " and value " + value);
 
-        addDelayInSeconds(delayInSeconds);
-        log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
+        if (value == IntIntMap.MISSING) {
+            log.info("[CLIENT " + id + "] Cannot create write operation, value " + value + " not allowed");
+            return;
+        }
 
-        //assumption: client can send only 1 request at a time
-        //if last operation of the client is finished or there are no operations, add new operation
-        if ((operations.size() > 0 && operations.get(operations.size() - 1).isFinished()) || operations.size() == 0) {
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
 
-            Stack<ActorRef> path = new Stack<>();
-            path.push(getSelf());
-            long requestId = System.currentTimeMillis(); // To be modified
-            WriteRequestMsg msg = new WriteRequestMsg(key, value, path, requestId);
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
+            WriteRequestMsg msg = new WriteRequestMsg(key, value, path, requestId, ttl);
             log.info("[CLIENT " + id + "] Created write request msg to be sent to " + getParent().path().name() + " with key " + key + " and value " + value);
 
             ClientOperation writeOp = new ClientOperation("write", key, requestId);
             writeOp.setValue(value); //since write operation has value
-            operations.add(writeOp);
+            writeOp.setTtl(ttl);
+            startOperation(writeOp);
             log.info("[CLIENT " + id + "] Created new write operation");
 
             getParent().tell(msg, getSelf());
@@ -264,30 +398,65 @@ public class Client extends AbstractActor {
             startTimeout("write", requestId, getParent().path().name());
 
         } else {
-            //if last operation is not finished
-            log.info("[CLIENT " + id + "] Cannot create new write operation, last operation not finished");
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new write operation, " + inFlight.size() + " operations in flight");
+        }
+
+    }
+
+    public void sendMultiWriteRequestMsg(int[] keys, int[] values, int ttl){
+
+        log.info("[CLIENT " + id + "] Started creating multi write request msg, to be sent to " + getParent().path().name() + " with keys " + Arrays.toString(keys) + " and values " + Arrays.toString(values));
+
+        if (keys.length == 0 || keys.length != values.length) {
+            log.info("[CLIENT " + id + "] Cannot create multi write operation, keys and values must be non empty and of the same length");
+            return;
+        }
+        if (Arrays.stream(values).anyMatch(value -> value == IntIntMap.MISSING)) {
+            log.info("[CLIENT " + id + "] Cannot create multi write operation, value " + IntIntMap.MISSING + " not allowed");
+            return;
+        }
+
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
+
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
+            MultiWriteRequestMsg msg = new MultiWriteRequestMsg(keys, values, path, requestId, ttl);
+
+            ClientOperation multiWriteOp = new ClientOperation("multi_write", keys[0], requestId);
+            multiWriteOp.setKeys(keys);
+            multiWriteOp.setValues(values);
+            multiWriteOp.setTtl(ttl);
+            startOperation(multiWriteOp);
+            log.info("[CLIENT " + id + "] Created new multi write operation");
+
+            getParent().tell(msg, getSelf());
+            log.info("[CLIENT " + id + "] Sent multi write request msg! to " + getParent().path().name());
+
+            startTimeout("multi_write", requestId, getParent().path().name());
+
+        } else {
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new multi write operation, " + inFlight.size() + " operations in flight");
         }
 
     }
 
-    public void sendCriticalReadRequestMsg(int key, int delayInSeconds){
+    public void sendCriticalReadRequestMsg(int key){
 
         log.info("[CLIENT " + id + "] Started creating critical read request msg, to be sent to " + getParent().path().name() + " with key " + key);
 
-        addDelayInSeconds(delayInSeconds);
-        log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
-        // assumption: client can send only 1 request at a time
-        // if last operation of the client is finished or there are no operations, add new operation
-        if ((operations.size() > 0 && operations.get(operations.size() - 1).isFinished()) || operations.size() == 0) {
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
 
-            Stack<ActorRef> path = new Stack<>();
-            path.push(getSelf());
-            long requestId = System.currentTimeMillis(); //To be modified
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
             CriticalReadRequestMsg msg = new CriticalReadRequestMsg(key, path, requestId);
             log.info("[CLIENT " + id + "] Created critical read request msg to be sent to " + getParent().path().name() + " with key " + key + " and requestId " + msg.getRequestId());
 
-            operations.add(new ClientOperation("crit_read", key, requestId));
+            startOperation(new ClientOperation("crit_read", key, requestId));
             log.info("[CLIENT " + id + "] Created new critical read operation");
 
             getParent().tell(msg, getSelf());
@@ -296,33 +465,32 @@ public class Client extends AbstractActor {
             startTimeout("crit_read", requestId, getParent().path().name());
 
         } else {
-            //if last operation is not finished
-            log.info("[CLIENT " + id + "] Cannot create new read operation, last operation not finished");
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new read operation, " + inFlight.size() + " operations in flight");
         }
 
     }
 
-    public void sendCriticalWriteRequestMsg(int key, int value, int delayInSeconds){
+    public void sendCriticalWriteRequestMsg(int key, int value){
 
         log.info("[CLIENT " + id + "] Started creating critical write request msg, to be sent to " + getParent().path().name() + " with key " + key + " and value " + value);
 
-        addDelayInSeconds(delayInSeconds);
-        log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
-
-        //assumption: client can send only 1 request at a time
-        //if last operation of the client is finished or there are no operations, add new operation
+        if (value == IntIntMap.MISSING) {
+            log.info("[CLIENT " + id + "] Cannot create critical write operation, value " + value + " not allowed");
+            return;
+        }
 
-        if ((operations.size() > 0 && operations.get(operations.size() - 1).isFinished()) || operations.size() == 0) {
+        // up to window operations can be in flight, their responses are matched by requestId
+        if (canStartOperation()) {
 
-            Stack<ActorRef> path = new Stack<>();
-            path.push(getSelf());
-            long requestId = System.currentTimeMillis(); // To be modified
+            RequestPath path = requestPath();
+            long requestId = nextRequestId();
             CriticalWriteRequestMsg msg = new CriticalWriteRequestMsg(key, value, path, requestId);
             log.info("[CLIENT " + id + "] Created critical write request msg to be sent to " + getParent().path().name() + " with key " + key + " and value " + value);
 
             ClientOperation critWriteOp = new ClientOperation("crit_write", key, requestId);
             critWriteOp.setValue(value); //since write operation has value
-            operations.add(critWriteOp);
+            startOperation(critWriteOp);
             log.info("[CLIENT " + id + "] Created new critical write operation");
 
             getParent().tell(msg, getSelf());
@@ -332,48 +500,55 @@ public class Client extends AbstractActor {
             startTimeout("crit_write", requestId, getParent().path().name());
 
         } else {
-            //if last operation is not finished
-            log.info("[CLIENT " + id + "] Cannot create new critical write operation, last operation not finished");
+            //if the window is full
+            log.info("[CLIENT " + id + "] Cannot create new critical write operation, " + inFlight.size() + " operations in flight");
         }
 
     }
 
-    // used when client timeout on a L2 cache and needs to retry the operation with another L2 cache
+    // used when client timeout on a L2 cache and needs to retry the operations with another L2 cache
     public void retryOperation(){
-        if (operations.size() > 0){
-            // get last operation on the list
-            ClientOperation lastOp = operations.get(operations.size() - 1);
-            if(lastOp.isFinished()){
-                log.info("[CLIENT " + id + "] Operation" + lastOp.getOperation() + " finished");
-                return;
-            }
+        if (inFlight.isEmpty()) {
+            log.info("[CLIENT " + id + "] No operations to retry");
+            return;
+        }
 
-            //int delayInSeconds = rnd.nextInt(5);
-            int delayInSeconds = 1; //to be changed, dynamic
+        // the operations are sent again after RETRY_DELAY seconds, without blocking the client in the meantime
+        getTimers().startSingleTimer("retry", new RetryOperationMsg(), Duration.ofSeconds(RETRY_DELAY));
+    }
 
-            // we must differentiate between standard sendReadRequestMsg, sendWriteRequestMsg, etc
-            // since we need to re use the same requestId, we cannot simply use sendReadRequestMsg, sendWriteRequestMsg, etc
-            retrySendMsg(lastOp, delayInSeconds);
+    private void onRetryOperationMsg(RetryOperationMsg msg) {
+        // a single operation, after the backoff of an overloaded response
+        if (msg.getRequestId() != RetryOperationMsg.ALL) {
+            ClientOperation operation = inFlight.get(msg.getRequestId());
+            if (operation != null) {
+                retrySendMsg(operation);
+            }
+            return;
+        }
 
-        } else {
-            log.info("[CLIENT " + id + "] No operations to retry");
+        // every operation in flight was sent to the previous parent, all of them are sent again
+        // we must differentiate between standard sendReadRequestMsg, sendWriteRequestMsg, etc
+        // since we need to re use the same requestId, we cannot simply use sendReadRequestMsg, sendWriteRequestMsg, etc
+        for (ClientOperation operation : new ArrayList<>(inFlight.values())) {
+            retrySendMsg(operation);
         }
     }
 
-    public void retrySendMsg(ClientOperation operation, int delayInSeconds){
+    public void retrySendMsg(ClientOperation operation){
 
         //System.out.println("Operations size: " + operations.size()); //debug, should be at least 1
 
-        Stack<ActorRef> path = new Stack<>();
-        path.push(getSelf());
+        RequestPath path = requestPath();
         long requestId = operation.getFirstRequestId(); // Retrieving the first request id of the operation
 
+        // the operation is sent now, a pending retry after an overloaded response is no longer needed
+        getTimers().cancel(backoffKey(requestId));
+
         switch(operation.getOperation()) {
             case "read":
                 log.info("[CLIENT " + id + "] Retrying sending read request msg, to be sent to " + getParent().path().name() + " with key " + operation.getKey());
 
-                addDelayInSeconds(delayInSeconds);
-                log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
                 ReadRequestMsg readRequestMsg = new ReadRequestMsg(operation.getKey(), path, requestId);
                 log.info("[CLIENT " + id + "] Created read request msg to be sent to " + getParent().path().name() + " with key " + readRequestMsg.getKey() + " and requestId " + readRequestMsg.getRequestId());
@@ -384,13 +559,20 @@ public class Client extends AbstractActor {
                 startTimeout("read", requestId, getParent().path().name());
                 log.info("[CLIENT " + id + "] Started timeout for read request msg! to " + getParent().path().name());
                 break;
+            case "multi_read":
+                log.info("[CLIENT " + id + "] Retrying sending multi read request msg, to be sent to " + getParent().path().name() + " with keys " + Arrays.toString(operation.getKeys()));
+
+                MultiReadRequestMsg multiReadRequestMsg = new MultiReadRequestMsg(operation.getKeys(), path, requestId);
+                getParent().tell(multiReadRequestMsg, getSelf());
+                log.info("[CLIENT " + id + "] Sent multi read request msg! to " + getParent().path().name());
+
+                startTimeout("multi_read", requestId, getParent().path().name());
+                break;
             case "write":
                 log.info("[CLIENT " + id + "] Started creating write request msg, to be sent to " + getParent().path().name() + " with key " + operation.getKey() + " and value " + operation.getValue());
 
-                addDelayInSeconds(delayInSeconds);
-                log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
-                WriteRequestMsg writeRequestMsg = new WriteRequestMsg(operation.getKey(), operation.getValue(), path, requestId);
+                WriteRequestMsg writeRequestMsg = new WriteRequestMsg(operation.getKey(), operation.getValue(), path, requestId, operation.getTtl());
                 log.info("[CLIENT " + id + "] Created write request msg to be sent to " + getParent().path().name() + " with key " + writeRequestMsg.getKey() + " and value " + writeRequestMsg.getValue());
 
                 getParent().tell(writeRequestMsg, getSelf());
@@ -399,11 +581,18 @@ public class Client extends AbstractActor {
                 startTimeout("write", requestId, getParent().path().name());
                 log.info("[CLIENT " + id + "] Started timeout for write request msg! to " + getParent().path().name());
                 break;
+            case "multi_write":
+                log.info("[CLIENT " + id + "] Retrying sending multi write request msg, to be sent to " + getParent().path().name() + " with keys " + Arrays.toString(operation.getKeys()));
+
+                MultiWriteRequestMsg multiWriteRequestMsg = new MultiWriteRequestMsg(operation.getKeys(), operation.getValues(), path, requestId, operation.getTtl());
+                getParent().tell(multiWriteRequestMsg, getSelf());
+                log.info("[CLIENT " + id + "] Sent multi write request msg! to " + getParent().path().name());
+
+                startTimeout("multi_write", requestId, getParent().path().name());
+                break;
             case "crit_read":
                 log.info("[CLIENT " + id + "] Retrying sending critical read request msg, to be sent to " + getParent().path().name() + " with key " + operation.getKey());
 
-                addDelayInSeconds(delayInSeconds);
-                log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
                 CriticalReadRequestMsg criticalReadRequestMsg = new CriticalReadRequestMsg(operation.getKey(), path, requestId);
                 log.info("[CLIENT " + id + "] Created critical read request msg to be sent to " + getParent().path().name() + " with key " + criticalReadRequestMsg.getKey() + " and requestId " + criticalReadRequestMsg.getRequestId());
@@ -417,8 +606,6 @@ public class Client extends AbstractActor {
             case "crit_write":
                 log.info("[CLIENT " + id + "] Started creating critical write request msg, to be sent to " + getParent().path().name() + " with key " + operation.getKey() + " and value " + operation.getValue());
 
-                addDelayInSeconds(delayInSeconds);
-                log.info("[CLIENT " + id + "] Delay of " + delayInSeconds + " seconds added");
 
                 CriticalWriteRequestMsg criticalWriteRequestMsg = new CriticalWriteRequestMsg(operation.getKey(), operation.getValue(), path, requestId);
                 log.info("[CLIENT " + id + "] Created critical write request msg to be sent to " + getParent().path().name() + " with key " + criticalWriteRequestMsg.getKey() + " and value " + criticalWriteRequestMsg.getValue());
@@ -438,28 +625,34 @@ public class Client extends AbstractActor {
     // Here we define the mapping between the received message types and the database methods
     @Override
     public Receive createReceive() {
-        return receiveBuilder()
+        return this.latency.wrap(receiveBuilder()
                 .match(StartInitMsg.class, this::onStartInitMsg)
 
                 .match(StartReadRequestMsg.class, this::onStartReadRequestMsg)
+                .match(StartMultiReadRequestMsg.class, this::onStartMultiReadRequestMsg)
                 .match(StartWriteMsg.class, this::onStartWriteMsg)
+                .match(StartMultiWriteMsg.class, this::onStartMultiWriteMsg)
                 .match(StartCriticalReadRequestMsg.class, this::onStartCriticalReadRequestMsg)
                 .match(StartCriticalWriteRequestMsg.class, this::onStartCriticalWriteRequestMsg)
 
                 .match(ReadResponseMsg.class, this::onReadResponseMsg)
+                .match(MultiReadResponseMsg.class, this::onMultiReadResponseMsg)
                 .match(WriteResponseMsg.class, this::onWriteResponseMsg)
+                .match(MultiWriteResponseMsg.class, this::onMultiWriteResponseMsg)
                 .match(CriticalReadResponseMsg.class, this::onCriticalReadResponseMsg)
                 .match(CriticalWriteResponseMsg.class, this::onCriticalWriteResponseMsg)
 
                 .match(TimeoutMsg.class, this::onTimeoutMsg)
                 .match(TimeoutElapsedMsg.class, this::onTimeoutElapsedMsg)
+                .match(RetryOperationMsg.class, this::onRetryOperationMsg)
+                .match(OverloadedResponseMsg.class, this::onOverloadedResponseMsg)
                 .match(ResponseConnectionMsg.class, this::onResponseConnectionMsg)
                 .match(InfoMsg.class, this::onInfoMsg)
                 .match(ClientOperationsListMsg.class, this::onClientOperationsListMsg)
 
                 .matchAny(o -> log.debug("[CLIENT " + id + "] received unknown message from " +
                         getSender().path().name() + ": " + o))
-                .build();
+                .build());
     }
 
 
@@ -473,78 +666,130 @@ public class Client extends AbstractActor {
 
     public void onStartReadRequestMsg(Message.StartReadRequestMsg msg) {
         log.info("[CLIENT " + id + "] Received start read request msg!");
-        int delay = 0;
-        sendReadRequestMsg(msg.key, delay);
+        sendReadRequestMsg(msg.key);
+    }
+
+    private void onStartMultiReadRequestMsg(StartMultiReadRequestMsg msg) {
+        log.info("[CLIENT " + id + "] Received start multi read request msg!");
+        sendMultiReadRequestMsg(msg.getKeys());
     }
 
     private void onStartWriteMsg(StartWriteMsg msg) {
         log.info("[CLIENT " + id + "] Received write msg request!");
-        int delay = 0;
-        sendWriteRequestMsg(msg.getKey(), msg.getValue(), delay);
+        sendWriteRequestMsg(msg.getKey(), msg.getValue(), msg.getTtl());
+    }
+
+    private void onStartMultiWriteMsg(StartMultiWriteMsg msg) {
+        log.info("[CLIENT " + id + "] Received multi write msg request!");
+        sendMultiWriteRequestMsg(msg.getKeys(), msg.getValues(), msg.getTtl());
     }
 
     private void onStartCriticalReadRequestMsg(StartCriticalReadRequestMsg msg){
         log.info("[CLIENT " + id + "] Received critical read msg request!");
-        int delay = 0;
-        sendCriticalReadRequestMsg(msg.getKey(), delay);
+        sendCriticalReadRequestMsg(msg.getKey());
     }
 
     private void onStartCriticalWriteRequestMsg(StartCriticalWriteRequestMsg msg){
         log.info("[CLIENT " + id + "] Received critical write msg request!");
-        int delay = 0;
-        sendCriticalWriteRequestMsg(msg.getKey(), msg.getValue(), delay);
+        sendCriticalWriteRequestMsg(msg.getKey(), msg.getValue());
     }
 
     // ----------RESPONSES----------
 
     public void onReadResponseMsg(ReadResponseMsg msg){
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
 
         log.info("[CLIENT " + id + "] Received read response from " + getSender().path().name() + " with value " + msg.getValue() + " for key " + msg.getKey());
-        operations.get(operations.size() - 1).setValue(msg.getValue());
-        operations.get(operations.size() - 1).setFinished(true);
-        operations.get(operations.size() - 1).setEndTime();
+        operation.setValue(msg.getValue());
 
-        if (msg.getValue() == -1) {
-            operations.get(operations.size() - 1).setSuccess(false);
+        if (msg.getValue() == IntIntMap.MISSING) {
+            operation.setSuccess(false);
         } else {
-            operations.get(operations.size() - 1).setSuccess(true);
+            operation.setSuccess(true);
         }
 
-        log.info("[CLIENT " + id + "] Operation " + operations.get(operations.size() - 1).getOperation() + " finished");
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
+        log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
+    }
+
+    public void onMultiReadResponseMsg(MultiReadResponseMsg msg){
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
+
+        log.info("[CLIENT " + id + "] Received multi read response from " + getSender().path().name() + " with values " + Arrays.toString(msg.getValues()) + " for keys " + Arrays.toString(msg.getKeys()));
+        operation.setValues(msg.getValues());
+
+        // successful only if every key is present
+        boolean success = true;
+        for (int value : msg.getValues()) {
+            if (value == IntIntMap.MISSING) {
+                success = false;
+                break;
+            }
+        }
+        operation.setSuccess(success);
+
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
         log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
     }
 
     public void onCriticalReadResponseMsg(CriticalReadResponseMsg msg){
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
 
         log.info("[CLIENT " + id + "] Received CritRead response from " + getSender().path().name() + " with value " + msg.getValue() + " for key " + msg.getKey());
-        operations.get(operations.size() - 1).setValue(msg.getValue());
-        operations.get(operations.size() - 1).setFinished(true);
-        operations.get(operations.size() - 1).setEndTime();
+        operation.setValue(msg.getValue());
 
-        if (msg.getValue() == -1) {
-            operations.get(operations.size() - 1).setSuccess(false);
+        if (msg.getValue() == IntIntMap.MISSING) {
+            operation.setSuccess(false);
         } else {
-            operations.get(operations.size() - 1).setSuccess(true);
+            operation.setSuccess(true);
         }
 
-        log.info("[CLIENT " + id + "] Operation " + operations.get(operations.size() - 1).getOperation() + " finished");
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
         log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
     }
 
     private void onWriteResponseMsg(WriteResponseMsg msg) {
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
         log.info("[CLIENT " + id + "] Received write response msg, with value " + msg.getValue() + " for key " + msg.getKey() + " from " + getSender().path().name());
 
-        operations.get(operations.size() - 1).setValue(msg.getValue());
-        operations.get(operations.size() - 1).setFinished(true);
-        operations.get(operations.size() - 1).setEndTime();
-        operations.get(operations.size() - 1).setSuccess(true);
-        log.info("[CLIENT " + id + "] Operation " + operations.get(operations.size() - 1).getOperation() + " finished");
+        operation.setValue(msg.getValue());
+        operation.setSuccess(true);
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
         log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
         // when interacting with the SAME cache (l2 cache)
         // the client is guaranteed not to read a value older than the last write
     }
 
+    private void onMultiWriteResponseMsg(MultiWriteResponseMsg msg) {
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
+        log.info("[CLIENT " + id + "] Received multi write response msg, with values " + Arrays.toString(msg.getValues()) + " for keys " + Arrays.toString(msg.getKeys()) + " from " + getSender().path().name());
+
+        operation.setValues(msg.getValues());
+        operation.setSuccess(true);
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
+        log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
+    }
+
     private void onCriticalWriteResponseMsg(CriticalWriteResponseMsg msg) {
+        ClientOperation operation = completeOperation(msg.getRequestId());
+        if (operation == null) {
+            return;
+        }
         log.info("[CLIENT " + id + "] Received critical write response msg, with value " + msg.getValue() + " for key " + msg.getKey() + " from " + getSender().path().name());
 
         //print isRefused
@@ -557,11 +802,9 @@ public class Client extends AbstractActor {
         // print updated caches
         //log.info("[CLIENT " + id + "] Updated caches: " + msg.printUpdatedCaches());
 
-        operations.get(operations.size() - 1).setValue(msg.getValue());
-        operations.get(operations.size() - 1).setFinished(true);
-        operations.get(operations.size() - 1).setEndTime();
-        operations.get(operations.size() - 1).setSuccess(!msg.isRefused());
-        log.info("[CLIENT " + id + "] Operation " + operations.get(operations.size() - 1).getOperation() + " finished");
+        operation.setValue(msg.getValue());
+        operation.setSuccess(!msg.isRefused());
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " finished");
         log.info("[CLIENT " + id + "] Operations list: " + operations.toString());
 
     }
@@ -572,52 +815,38 @@ public class Client extends AbstractActor {
 
         log.info("[CLIENT " + id + "] Received timeout msg of type " + msg.getType() + " with destination " + msg.getConnectionDestination());
 
+        // the operation is sent again or answered late, its latency is not sampled
+        rtt.forget(msg.getRequestId());
+
         // check timeout msg type
         if(Objects.equals(msg.getType(), "read")
+            || Objects.equals(msg.getType(), "multi_read")
             || Objects.equals(msg.getType(), "write")
+            || Objects.equals(msg.getType(), "multi_write")
             || Objects.equals(msg.getType(), "crit_read")
             || Objects.equals(msg.getType(), "crit_write")){
 
             //check if operation is finished in the meantime
-            if (operations.size() > 0) {
-
-                // we cannot just check the last operation (previous implementation)
-                // we cannot either just check the TimeoutMsg type (2 operations of the same type could run one after the other)
-                // since a TimeoutMsg could be received after a first operation is finished and after a second operation is started
-
-                // loop through all client operations, from newest to oldest, and check if the one with the same requestId is finished
-                for (int i = operations.size() - 1; i >= 0; i--) {
-                    ClientOperation operation = operations.get(i);
-                    System.out.println("operation: getFirstRequestId: " + operation.getFirstRequestId() + " --- msg.getRequestId(): " + msg.getRequestId());
-                    if (operation.getFirstRequestId() == msg.getRequestId()) {
-                        if (operation.isFinished()) {
-                            //System.out.println("inside if after new loop of operations");
-                            log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " already finished");
-                            log.info("[CLIENT " + id + "] Ignoring timeout msg");
-                            return;
-                        } else {
-                            //System.out.println("inside ELSE after new loop of operations");
-                            log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " still running");
-                            log.info("[CLIENT " + id + "] Processing timeout msg");
-                            break;
-                        }
-                    }
-                }
+            ClientOperation operation = inFlight.get(msg.getRequestId());
+            if (operation == null) {
+                log.info("[CLIENT " + id + "] Operation with requestId " + msg.getRequestId() + " already finished");
+                log.info("[CLIENT " + id + "] Ignoring timeout msg");
+                return;
             }
 
-            // check if it is a timeout to be skipped
-            // use case: a L2 cache tells the client that it needs more time to fulfill client's request
-            System.out.println("timeouts to skip size BEFORE: " + timeouts_to_skip.size());
-            if(timeouts_to_skip.size() > 0){
-                System.out.println("inside first if of timeouts to skip");
-                String current_op = operations.get(operations.size() - 1).getOperation();
-                if(timeouts_to_skip.get(0).equals(current_op)){
-                    timeouts_to_skip.remove(0);
-                    log.info("[CLIENT " + id + "] Skipping timeout msg, since parent is still processing the request and needs more time");
-                    System.out.println("timeouts to skip size AFTER: " + timeouts_to_skip.size());
-                    return;
-                }
+            // with several operations in flight, the other operations sent to a failed parent time out too:
+            // the first timeout starts the failover and all the operations are retried on the new parent
+            if (!isConnectedToParent || !msg.getConnectionDestination().equals(getParent().path().name())) {
+                log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " will be retried on " + getParent().path().name());
+                log.info("[CLIENT " + id + "] Ignoring timeout msg");
+                return;
             }
+
+            log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " still running");
+            log.info("[CLIENT " + id + "] Processing timeout msg");
+
+            // no need to skip timeouts when a L2 cache asks for more time (TimeoutElapsedMsg):
+            // the timer is restarted with the same key, which replaces the pending one
         }
 
         if(msg.getType() == "connection") {
@@ -662,28 +891,15 @@ public class Client extends AbstractActor {
     private void onTimeoutElapsedMsg (TimeoutElapsedMsg msg){
         log.info("[CLIENT " + id + "] Received timeout elapsed msg from {}!", getSender().path().name());
 
-        // check what is the current operation ongoing (read, write, crit_read, crit_write)
-        // assumption: only one operation can be ongoing at a time per client
-        ClientOperation current_op = operations.get(operations.size() - 1);
-        String current_op_type = current_op.getOperation();
-        if(current_op_type != msg.getType()){
-            // should never happen with the current assumptions
-            log.info("[CLIENT " + id + "] Received timeout elapsed msg of type " + msg.getType() + " but current operation is " + current_op_type);
+        // the L2 cache asks for more time for a single operation, identified by requestId
+        ClientOperation current_op = inFlight.get(msg.getRequestId());
+        if (current_op == null || !current_op.getOperation().equals(msg.getType())) {
+            log.info("[CLIENT " + id + "] Received timeout elapsed msg of type " + msg.getType() + " for request " + msg.getRequestId() + " not in flight");
             return;
         }
 
-        // add to timeouts_to_skip the operation type of the msg received
-        // that operation must match the current operation ongoing
-        // timeouts_to_skip is a one-element list since only one operation can be ongoing at a time per client
-        // assumption: you get only one timeout elapsed msg per time
-        //System.out.println("timeouts to skip size: " + timeouts_to_skip.size());
-        if(timeouts_to_skip.size() == 0){
-            //System.out.println("inside if of timeout elapsed msg");
-            timeouts_to_skip.add(msg.getType());
-            log.info("[CLIENT " + id + "] Added " + msg.getType() + " timeout to timeouts_to_skip");
-        }
-
-        // start a new timeout with the same type as the current operation ongoing
+        // start a new timeout for the operation
+        // the timer has the same key of the pending one, so the pending one is replaced
         startTimeout(msg.getType(), current_op.getFirstRequestId(), getSender().path().name());
         log.info("[CLIENT " + id + "] Will wait for another timeout msg of type " + msg.getType() + " from " + getSender().path().name());
         log.info("[CLIENT " + id + "] Started " + msg.getType() + " timeout");
@@ -699,6 +915,7 @@ public class Client extends AbstractActor {
         if(msg.getResponse().equals("ACCEPTED")){
             log.info("[CLIENT " + id + "] Connection established with " + getSender().path().name());
             this.isConnectedToParent = true;
+            cancelTimeout("connection", -1);
 
             //retrying last operation
             retryOperation();
@@ -707,10 +924,36 @@ public class Client extends AbstractActor {
 
     }
 
+    // ----------OVERLOAD LOGIC----------
+
+    // a cache or the database shed the request: the operation stays in flight and is sent again after a backoff,
+    // exponential in the overloads of the operation and randomized in [backoff/2, backoff] (jitter),
+    // so that the clients shed together do not come back together
+    private void onOverloadedResponseMsg(OverloadedResponseMsg msg) {
+        ClientOperation operation = inFlight.get(msg.getRequestId());
+        if (operation == null) {
+            log.info("[CLIENT " + id + "] Received overloaded response for request " + msg.getRequestId() + " not in flight, ignoring it");
+            return;
+        }
+        cancelTimeout(operation.getOperation(), msg.getRequestId());
+        operation.overloaded();
+
+        long backoff = (long) overloadBackoff << Math.min(operation.getOverloads() - 1, MAX_BACKOFF_EXPONENT);
+        long delay = backoff / 2 + (long) (rnd.nextDouble() * (backoff / 2 + 1));
+        log.info("[CLIENT " + id + "] Operation " + operation.getOperation() + " shed by " + getSender().path().name() + " (overload " + operation.getOverloads() + "), retrying in " + delay + " ms");
+
+        getTimers().startSingleTimer(backoffKey(msg.getRequestId()), new RetryOperationMsg(msg.getRequestId()), Duration.ofMillis(delay));
+    }
+
+    private static String backoffKey(long requestId) {
+        return "backoff-" + requestId;
+    }
+
     // ----------OTHER MESSAGES----------
 
     private void onInfoMsg (InfoMsg msg){
         log.info("[CLIENT {}] Parent: ", getId(), getParent().path().name());
+        log.info("[CLIENT " + id + "] Adaptive timeouts: " + rtt);
     }
 
     private void onClientOperationsListMsg (ClientOperationsListMsg msg) {
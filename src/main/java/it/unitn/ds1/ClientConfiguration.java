@@ -10,6 +10,16 @@ public class ClientConfiguration {
 
     private List<TimeoutConfiguration> timeouts = new ArrayList<>();
 
+    // requests without path, routed back hop by hop by the caches
+    private boolean hopLocalRouting = false;
+
+    // operations a client can have in flight at the same time, 1 means one operation at a time
+    private int window = 1;
+
+    // milliseconds waited before retrying an operation shed by an overloaded cache or database,
+    // doubled at every overload of the same operation and randomized (jitter)
+    private int overloadBackoff = 100;
+
     public int getMaxNum() {
         return maxNum;
     }
@@ -32,17 +42,41 @@ public class ClientConfiguration {
 
     public void setTimeouts(List<TimeoutConfiguration> timeouts) {
         for(TimeoutConfiguration timeout: timeouts){
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
 
+    public boolean getHopLocalRouting() {
+        return hopLocalRouting;
+    }
+
+    public void setHopLocalRouting(boolean hopLocalRouting) {
+        this.hopLocalRouting = hopLocalRouting;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public int getOverloadBackoff() {
+        return overloadBackoff;
+    }
+
+    public void setOverloadBackoff(int overloadBackoff) {
+        this.overloadBackoff = overloadBackoff;
+    }
+
     public ClientConfiguration(){}
 
     public ClientConfiguration(int maxNum, List<TimeoutConfiguration> timeouts){
         this.maxNum = maxNum;
         for(TimeoutConfiguration timeout: timeouts){
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
@@ -1,11 +1,14 @@
 package it.unitn.ds1;
 
+import java.util.List;
+
 public class Configuration {
     private SystemProperty systemProperty;
     private ClientConfiguration clients;
     private CacheConfiguration L1Caches;
     private CacheConfiguration L2Caches;
     private DatabaseConfiguration database;
+    private List<LatencyConfiguration> latencies;
 
     public SystemProperty getSystemProperty() {
         return systemProperty;
@@ -47,6 +50,14 @@ public class Configuration {
         this.database = database;
     }
 
+    public List<LatencyConfiguration> getLatencies() {
+        return latencies;
+    }
+
+    public void setLatencies(List<LatencyConfiguration> latencies) {
+        this.latencies = latencies;
+    }
+
     public Configuration(){}
 
     public Configuration(ClientConfiguration clients,
@@ -2,22 +2,21 @@ package it.unitn.ds1;
 
 import akka.actor.*;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 
 import it.unitn.ds1.Message.*;
-import scala.concurrent.duration.Duration;
 
-public class Database extends AbstractActor {
+public class Database extends AbstractActorWithTimers {
 
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
     private int id;
 
-    private Map<Integer, Integer> data = new HashMap<>();
+    private IntIntMap data = new IntIntMap();
 
     // since the db and different type of caches have different interactions
     // it is better to have a different set for each type of cache
@@ -26,6 +25,9 @@ public class Database extends AbstractActor {
 
     private final HashMap<String, Integer> timeouts = new HashMap<>();
 
+    // simulated network latency of the incoming messages
+    private final LatencyInjector latency;
+
     private Random rnd = new Random();
     private String classString = String.valueOf(getClass());
 
@@ -40,6 +42,10 @@ public class Database extends AbstractActor {
     // set to store requestId (of type long) of ongoing critical writes
     private Set<Long> ongoingCritWritesRequestId = new HashSet<>();
 
+    // requestId -> cache that sent the critical write, the response is sent to it
+    // (the path of the request is empty with hop-local routing)
+    private Map<Long, ActorRef> critWriteRequesters = new HashMap<>();
+
     // map to store the caches involved in a critical write for a specific key
     // assumption: a cache can be involved in a critical write for a specific key only once at a time
     private Map<Integer, Set<ActorRef>> involvedCachesCritWrites = new HashMap<>();
@@ -54,14 +60,46 @@ public class Database extends AbstractActor {
     // when the operation is accepted but still not confirmed
     private Map<Long, Boolean> acceptedCritWrites = new HashMap<>();
 
+    // ----------DEDUPLICATION SUPPORT DATA STRUCTURES----------
+
+    // outcome of the last writes applied (write, multi_write, crit_write), by requestId, oldest first
+    // a write retried with the same requestId (e.g. by a L2 cache after the crash of its L1 cache) is answered
+    // from here, without writing again and without sending the fills again
+    // requestId -> refused (only a critical write can be refused)
+    private final Map<Long, Boolean> appliedWrites;
+
+    // mailbox of the database in the configuration of the actor system, see PriorityMailbox
+    public static final String MAILBOX_ID = "database-mailbox";
 
-    public Database(int id, List<TimeoutConfiguration> timeouts) {
+    public Database(int id, List<TimeoutConfiguration> timeouts, List<LatencyConfiguration> latencies, int deduplicationWindow) {
         this.id = id;
+        this.appliedWrites = new LinkedHashMap<Long, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > deduplicationWindow;
+            }
+        };
+        this.latency = new LatencyInjector(getContext(), latencies, this::linkOf);
         setTimeouts(timeouts);
     }
 
-    static public Props props(int id, List<TimeoutConfiguration> timeouts) {
-        return Props.create(Database.class, () -> new Database(id, timeouts));
+    static public Props props(int id, List<TimeoutConfiguration> timeouts, List<LatencyConfiguration> latencies, String mailbox, int mailboxCapacity, int deduplicationWindow) {
+        return PriorityMailbox.withMailbox(Props.create(Database.class, () -> new Database(id, timeouts, latencies, deduplicationWindow)), MAILBOX_ID, mailbox, mailboxCapacity);
+    }
+
+    // ----------DEDUPLICATION LOGIC----------
+
+    private void appliedWrite(long requestId, boolean refused) {
+        this.appliedWrites.put(requestId, refused);
+    }
+
+    // outcome of the write with requestId if it was already applied, null otherwise
+    private Boolean appliedWriteOutcome(long requestId) {
+        Boolean refused = this.appliedWrites.get(requestId);
+        if (refused != null) {
+            log.info("[DATABASE " + id + "] Request " + requestId + " already applied, answering without applying it again");
+        }
+        return refused;
     }
 
     // ----------L2 CACHES LOGIC----------
@@ -79,7 +117,7 @@ public class Database extends AbstractActor {
     }
 
     public void removeL2_cache(ActorRef l2_cache) {
-        this.L1_caches.remove(l2_cache);
+        this.L2_caches.remove(l2_cache);
     }
 
     public boolean getL2_cache(ActorRef l2_cache) {
@@ -108,14 +146,16 @@ public class Database extends AbstractActor {
         return this.L1_caches.contains(l1_cache);
     }
 
-    public void addDelayInSeconds(int seconds) {
-        try {
-            log.info("[DATABASE " + id + "] Adding delay of " + seconds + " seconds");
-            Thread.sleep(seconds * 1000);
-        } catch (InterruptedException e) {
-            log.error("[DATABASE " + id + "] Error while adding delay");
-            e.printStackTrace();
+    // ----------LATENCY LOGIC----------
+
+    // link of the messages received from sender, null if they are not delayed
+    // a request from a cache not connected to the database comes from a L2 cache still attached to its L1 parent
+    // (the hedge of a read), it travels on the same link as the requests of the L2 caches connected after a failover
+    private String linkOf(ActorRef sender, Object msg) {
+        if (this.L1_caches.contains(sender)) {
+            return LatencyInjector.L1_DB;
         }
+        return this.L2_caches.contains(sender) || msg instanceof RequestMsg ? LatencyInjector.L2_DB : null;
     }
 
     // ----------TIMEOUT LOGIC----------
@@ -138,17 +178,25 @@ public class Database extends AbstractActor {
         this.timeouts.put(type, value);
     }
 
+    // one timer per critical write: the confirmed_write timeout replaces the accepted_write one
+    // and the timer is cancelled when the critical write completes, so no stale timeout reaches the mailbox
     private void startTimeout(String type, int key, long requestId) {
         log.info("[DATABASE " + id + "] Starting timeout for " + type + " request " + requestId);
-        getContext().system().scheduler().scheduleOnce(
-            Duration.create(getTimeout(type), TimeUnit.SECONDS),
-            getSelf(),
+        getTimers().startSingleTimer(
+            timeoutKey(requestId),
             new DbTimeoutMsg(type, key, requestId),
-            getContext().system().dispatcher(),
-            getSelf()
+            Duration.ofSeconds(getTimeout(type))
         );
     }
 
+    private void cancelTimeout(long requestId) {
+        getTimers().cancel(timeoutKey(requestId));
+    }
+
+    private static String timeoutKey(long requestId) {
+        return "crit_write-" + requestId;
+    }
+
 
     /*-- Actor logic -- */
 
@@ -160,9 +208,7 @@ public class Database extends AbstractActor {
         log.info("[DATABASE " + id + "] Started!");
 
         log.info("[DATABASE " + id + "] Initial data in database " + id + ":");
-        for (Map.Entry<Integer, Integer> entry : getData().entrySet()) {
-            log.info("[DATABASE " + id + "] Key = " + entry.getKey() + ", Value = " + entry.getValue());
-        }
+        getData().forEach((key, value) -> log.info("[DATABASE " + id + "] Key = " + key + ", Value = " + value));
     }
 
     public void populateDatabase() {
@@ -177,11 +223,17 @@ public class Database extends AbstractActor {
         return getData().containsKey(key);
     }
 
+    // returns IntIntMap.MISSING if the key is not stored
     public int getData(int key){
         return this.data.get(key);
     }
 
+    // IntIntMap.MISSING can not be stored, it is dropped instead of failing (and restarting) the database
     public void putData(int key, int value){
+        if (value == IntIntMap.MISSING) {
+            log.info("[DATABASE " + id + "] Dropped value " + value + " of key " + key + ", not allowed");
+            return;
+        }
         this.data.put(key, value);
     }
 
@@ -189,7 +241,7 @@ public class Database extends AbstractActor {
         this.data.clear();
     }
 
-    public Map<Integer, Integer> getData() {
+    public IntIntMap getData() {
         return this.data;
     }
 
@@ -202,24 +254,42 @@ public class Database extends AbstractActor {
 
             // if the cache is not the sender, send a fill message
             if (!cache.equals(getSender())){
-                cache.tell(new FillMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue()), getSelf());
+                cache.tell(new FillMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue(), writeRequestMsg.getTtl()), getSelf());
                 log.info("[DATABASE " + id + "] Sent a fill message to cache " + cache.path().name());
             } else { // if the cache is the sender, send a write response message
 
                 log.info("[DATABASE " + id + "] Sending a write response message to cache " + cache.path().name());
-                Stack<ActorRef> newPath = new Stack<>();
-                newPath.addAll(writeRequestMsg.getPath());
+                RequestPath newPath = writeRequestMsg.getPath();
                 System.out.println("[db, sendWriteResponses] newPath: " + newPath);
                 //print last element
-                System.out.println("[db, sendWriteResponses] newPath.getLast(): " + newPath.lastElement());
+                System.out.println("[db, sendWriteResponses] newPath.getLast(): " + newPath.peek());
 
                 System.out.println("[db, sendWriteResponses] newPath: " + newPath);
-                cache.tell(new WriteResponseMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue(), newPath, writeRequestMsg.getRequestId()), getSelf());
+                cache.tell(new WriteResponseMsg(writeRequestMsg.getKey(), writeRequestMsg.getValue(), newPath, writeRequestMsg.getRequestId(), writeRequestMsg.getTtl()), getSelf());
                 log.info("[DATABASE " + id + "] Sent a write response message to cache " + cache.path().name());
             }
         }
     }
 
+    // one aggregated message per cache for the whole batch: the response to the sender, a fill to the others
+    private void sendMultiWriteResponses(MultiWriteRequestMsg multiWriteRequestMsg, Set<ActorRef> caches) {
+
+        MultiFillMsg multiFillMsg = null;
+        for (ActorRef cache : caches) {
+
+            if (!cache.equals(getSender())) {
+                if (multiFillMsg == null) {
+                    multiFillMsg = new MultiFillMsg(multiWriteRequestMsg.getKeys(), multiWriteRequestMsg.getValues(), multiWriteRequestMsg.getTtl());
+                }
+                cache.tell(multiFillMsg, getSelf());
+                log.info("[DATABASE " + id + "] Sent a multi fill message to cache " + cache.path().name());
+            } else {
+                cache.tell(new MultiWriteResponseMsg(multiWriteRequestMsg.getKeys(), multiWriteRequestMsg.getValues(), multiWriteRequestMsg.getPath(), multiWriteRequestMsg.getRequestId(), multiWriteRequestMsg.getTtl()), getSelf());
+                log.info("[DATABASE " + id + "] Sent a multi write response message to cache " + cache.path().name());
+            }
+        }
+    }
+
     private void sendProposedWrite(CriticalWriteRequestMsg criticalWriteRequestMsg, Set<ActorRef> caches) {
 
         //System.out.println("[db, sendProposedWrite] criticalWriteRequestMsg: " + criticalWriteRequestMsg);
@@ -265,16 +335,20 @@ public class Database extends AbstractActor {
     // ----------RECEIVE LOGIC----------
 
     // Here we define the mapping between the received message types and the database methods
+    // incoming messages go through the simulated network latency first
     @Override
     public Receive createReceive() {
-        return receiveBuilder()
+        return this.latency.wrap(receiveBuilder()
                 .match(Message.InitMsg.class, this::onInitMsg)
                 .match(CurrentDataMsg.class, this::onCurrentDataMsg)
                 .match(DropDatabaseMsg.class, this::onDropDatabaseMsg)
                 .match(HealthCheckRequestMsg.class, this::onHealthCheckRequest)
+                .match(HeartbeatMsg.class, this::onHeartbeatMsg)
 
                 .match(ReadRequestMsg.class, this::onReadRequestMsg)
+                .match(MultiReadRequestMsg.class, this::onMultiReadRequestMsg)
                 .match(WriteRequestMsg.class, this::onWriteRequestMsg)
+                .match(MultiWriteRequestMsg.class, this::onMultiWriteRequestMsg)
                 .match(CriticalReadRequestMsg.class, this::onCriticalReadRequestMsg)
                 .match(CriticalWriteRequestMsg.class, this::onCriticalWriteRequestMsg)
 
@@ -284,9 +358,10 @@ public class Database extends AbstractActor {
                 .match(DbTimeoutMsg.class, this::onDbTimeoutMsg)
 
                 .match(RequestConnectionMsg.class, this::onRequestConnectionMsg)
+                .match(RequestDisconnectionMsg.class, this::onRequestDisconnectionMsg)
                 .match(RequestUpdatedDataMsg.class, this::onRequestUpdatedDataMsg)
                 .matchAny(o -> System.out.println("Database received unknown message from " + getSender()))
-                .build();
+                .build());
     }
 
     // ----------INITIALIZATION MESSAGE LOGIC----------
@@ -309,21 +384,29 @@ public class Database extends AbstractActor {
     // ----------GENERAL DATABASE MESSAGES LOGIC----------
 
     public void onCurrentDataMsg(CurrentDataMsg msg) {
-        log.info("[DATABASE " + id + "] Current data in database " + id + ":");
-        for (Map.Entry<Integer, Integer> entry : getData().entrySet()) {
-            log.info("[DATABASE " + id + "] Key = " + entry.getKey() + ", Value = " + entry.getValue());
+        String depth = PriorityMailbox.describe(getSelf());
+        if (depth != null) {
+            log.info("[DATABASE " + id + "] Mailbox depth: " + depth);
         }
+        log.info("[DATABASE " + id + "] Current data in database " + id + ":");
+        getData().forEach((key, value) -> log.info("[DATABASE " + id + "] Key = " + key + ", Value = " + value));
     }
 
     // DEBUG ONLY: assumption is that the database is always up
     public void onDropDatabaseMsg(DropDatabaseMsg msg) {
         log.info("[DATABASE " + id + "] Database drop request");
         clearData();
+        this.appliedWrites.clear();
         log.info("[DATABASE " + id + "] Database dropped");
     }
 
+    // the caches connected to the database check it with heartbeats, see Cache.onHeartbeatTickMsg
+    public void onHeartbeatMsg(HeartbeatMsg msg) {
+        getSender().tell(new HeartbeatAckMsg(), getSelf());
+    }
+
     public void onHealthCheckRequest(HealthCheckRequestMsg msg) {
-        HealthCheckResponseMsg new_msg = new HealthCheckResponseMsg(getData());
+        HealthCheckResponseMsg new_msg = new HealthCheckResponseMsg(getData().toMap());
         getSender().tell(new_msg, getSelf());
     }
 
@@ -332,16 +415,14 @@ public class Database extends AbstractActor {
     public void onReadRequestMsg(Message.ReadRequestMsg readRequestMsg){
         log.info("[DATABASE " + id + "] Received a read request for key " + readRequestMsg.getKey() + " from cache " + getSender().path().name());
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[DATABASE " + id + "] Delayed read request for key " + readRequestMsg.getKey() + " from cache " + getSender().path().name() + " by " + delay + " seconds");
 
         if (isDataPresent(readRequestMsg.getKey())){
 
             log.info("[DATABASE " + id + "] Data for key " + readRequestMsg.getKey() + " is present in database");
 
             //send response to child (l1 cache) (or l2 cache, if crashes are considered)
-            ActorRef child = readRequestMsg.getLast();
+            //the sender is also the last actor of the path, and the only one known with hop-local routing
+            ActorRef child = getSender();
 
             int value = getData(readRequestMsg.getKey());
 
@@ -352,9 +433,9 @@ public class Database extends AbstractActor {
             log.info("[DATABASE " + id + "] Read value " + value + " for key " + readRequestMsg.getKey() + " and sent it to cache " + child.path().name());
 
         } else { // data not present
-            //for now, the database will send a response to the client with a value of -1
-            ActorRef child = readRequestMsg.getLast();
-            int value = -1;
+            //the database will send a response to the client with IntIntMap.MISSING as value
+            ActorRef child = getSender();
+            int value = IntIntMap.MISSING;
 
             ReadResponseMsg readResponseMsg = new ReadResponseMsg(readRequestMsg.getKey(), value, readRequestMsg.getPath(), readRequestMsg.getRequestId());
             child.tell(readResponseMsg, getSelf());
@@ -364,15 +445,34 @@ public class Database extends AbstractActor {
         }
     }
 
+    // the whole batch is answered with a single response, IntIntMap.MISSING for the keys not present
+    public void onMultiReadRequestMsg(MultiReadRequestMsg msg) {
+        log.info("[DATABASE " + id + "] Received a multi read request for " + msg.getKeys().length + " keys from cache " + getSender().path().name());
+
+        int[] keys = msg.getKeys();
+        int[] values = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = getData(keys[i]);
+        }
+
+        getSender().tell(new MultiReadResponseMsg(keys, values, msg.getPath(), msg.getRequestId()), getSelf());
+        log.info("[DATABASE " + id + "] Sent multi read response for keys " + Arrays.toString(keys) + " to cache " + getSender().path().name());
+    }
+
     public void onWriteRequestMsg(WriteRequestMsg msg) {
         log.info("[DATABASE " + id + "] Received a write request for key " + msg.getKey() + " with value " + msg.getValue() + " from cache " + getSender().path().name());
 
+        // the fills were sent when the write was applied, only the requester is answered
+        // with the current value: the written one, unless a later write replaced it (the caches must not go back)
+        if (appliedWriteOutcome(msg.getRequestId()) != null) {
+            getSender().tell(new WriteResponseMsg(msg.getKey(), getData(msg.getKey()), msg.getPath(), msg.getRequestId(), msg.getTtl()), getSelf());
+            return;
+        }
+
         putData(msg.getKey(), msg.getValue());
+        appliedWrite(msg.getRequestId(), false);
         log.info("[DATABASE " + id + "] Wrote key " + msg.getKey() + " with value " + msg.getValue());
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[DATABASE " + id + "] Delayed write request for key " + msg.getKey() + " from cache " + getSender().path().name() + " by " + delay + " seconds");
 
         // notify all L1 caches
         sendWriteResponses(msg, L1_caches);
@@ -388,6 +488,40 @@ public class Database extends AbstractActor {
 
     }
 
+    // all the keys are applied at once, then the caches are notified like for a single write
+    // but with one message per cache for the whole batch
+    public void onMultiWriteRequestMsg(MultiWriteRequestMsg msg) {
+        log.info("[DATABASE " + id + "] Received a multi write request for " + msg.getKeys().length + " keys from cache " + getSender().path().name());
+
+        int[] keys = msg.getKeys();
+        int[] values = msg.getValues();
+
+        // like for a single write, with the current values of the keys
+        if (appliedWriteOutcome(msg.getRequestId()) != null) {
+            int[] current = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                current[i] = getData(keys[i]);
+            }
+            getSender().tell(new MultiWriteResponseMsg(keys, current, msg.getPath(), msg.getRequestId(), msg.getTtl()), getSelf());
+            return;
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            putData(keys[i], values[i]);
+        }
+        appliedWrite(msg.getRequestId(), false);
+        log.info("[DATABASE " + id + "] Wrote keys " + Arrays.toString(keys) + " with values " + Arrays.toString(values));
+
+        // notify all L1 caches
+        sendMultiWriteResponses(msg, L1_caches);
+
+        // notify all L2 caches that are connected directly with the db (due to previous crashes)
+        if (!L2_caches.isEmpty()) {
+            sendMultiWriteResponses(msg, L2_caches);
+            log.info("[DATABASE " + id + "] Sending multi write responses ALSO to L2 caches");
+        }
+    }
+
     public void onCriticalReadRequestMsg(CriticalReadRequestMsg criticalReadRequestMsg){
         log.info("[DATABASE " + id + "] Received a critical read request for key " + criticalReadRequestMsg.getKey() + " from cache " + getSender().path().name());
 
@@ -396,7 +530,7 @@ public class Database extends AbstractActor {
             log.info("[DATABASE " + id + "] Data for key " + criticalReadRequestMsg.getKey() + " is present in database");
 
             //send response to child (l1 cache) (or l2 cache, if crashes are considered)
-            ActorRef child = criticalReadRequestMsg.getLast();
+            ActorRef child = getSender();
 
             int value = getData(criticalReadRequestMsg.getKey());
 
@@ -405,9 +539,9 @@ public class Database extends AbstractActor {
             log.info("[DATABASE " + id + "] Read value " + value + " for key " + criticalReadRequestMsg.getKey() + " and sent it to cache " + child.path().name());
 
         } else { // data not present
-            //for now, the database will send a response to the client with a value of -1
-            ActorRef child = criticalReadRequestMsg.getLast();
-            int value = -1;
+            //the database will send a response to the client with IntIntMap.MISSING as value
+            ActorRef child = getSender();
+            int value = IntIntMap.MISSING;
 
             CriticalReadResponseMsg criticalReadResponseMsg = new CriticalReadResponseMsg(criticalReadRequestMsg.getKey(), value, criticalReadRequestMsg.getPath(), criticalReadRequestMsg.getRequestId());
             child.tell(criticalReadResponseMsg, getSelf());
@@ -419,9 +553,13 @@ public class Database extends AbstractActor {
     public void onCriticalWriteRequestMsg(CriticalWriteRequestMsg criticalWriteRequestMsg) {
         log.info("[DATABASE " + id + "] Received a critical write request for key " + criticalWriteRequestMsg.getKey() + " with value " + criticalWriteRequestMsg.getValue() + " from cache " + getSender().path().name());
 
-        int delay = 0;
-        addDelayInSeconds(delay);
-        log.info("[DATABASE " + id + "] Delayed critical write request for key " + criticalWriteRequestMsg.getKey() + " from cache " + getSender().path().name() + " by " + delay + " seconds");
+        // a critical write already concluded is not run again, the requester gets the same outcome
+        Boolean refused = appliedWriteOutcome(criticalWriteRequestMsg.getRequestId());
+        if (refused != null) {
+            int value = refused ? criticalWriteRequestMsg.getValue() : getData(criticalWriteRequestMsg.getKey());
+            getSender().tell(new CriticalWriteResponseMsg(criticalWriteRequestMsg.getKey(), value, criticalWriteRequestMsg.getPath(), criticalWriteRequestMsg.getRequestId(), refused), getSelf());
+            return;
+        }
 
         // check if the key is already present in ongoingCritWrites
         // this could also be a use case for retryRequest from a L2 cache connecting directly to the database
@@ -440,6 +578,7 @@ public class Database extends AbstractActor {
         log.info("[DATABASE " + id + "] Added critical write for key " + criticalWriteRequestMsg.getKey() + " with value " + criticalWriteRequestMsg.getValue() + " to ongoingCritWrites");
 
         ongoingCritWritesRequestId.add(criticalWriteRequestMsg.getRequestId());
+        critWriteRequesters.put(criticalWriteRequestMsg.getRequestId(), getSender());
         log.info("[DATABASE " + id + "] Added critical write request id " + criticalWriteRequestMsg.getRequestId() + " to ongoingCritWritesRequestId");
 
         // send proposed write to all connected caches
@@ -598,6 +737,7 @@ public class Database extends AbstractActor {
             //System.out.println("[database] 2ND! involvedCachesCritWrites, after removal: " +involvedCaches.toString());
 
             ongoingCritWritesRequestId.remove(requestId);
+            cancelTimeout(requestId);
             log.info("[DATABASE " + id + "] Removed request id from ongoingCritWritesRequestId: key: {}", confirmedWriteMsg.getKey());
 
             // remove from ongoingCritWrites
@@ -611,9 +751,10 @@ public class Database extends AbstractActor {
             log.info("[DATABASE " + id + "] involvedCaches: " + involvedCaches.toString());
             log.info("[DATABASE " + id + "] criticalWriteResponseMsg CACHES: " + criticalWriteResponseMsg.printUpdatedCaches());
 
-            ActorRef child = criticalWriteRequestMsg.getLast();
+            ActorRef child = critWriteRequesters.remove(criticalWriteRequestMsg.getRequestId());
             // get the path to the cache that requested the critical write using ongoingCritWrites
             child.tell(criticalWriteResponseMsg, getSelf());
+            appliedWrite(criticalWriteRequestMsg.getRequestId(), false);
 
             log.info("[DATABASE " + id + "] Sending write response to cache, GET_LAST (CHILD)" + child.path().name());
 
@@ -692,7 +833,7 @@ public class Database extends AbstractActor {
                 // crit_write abortion procedure
 
                 CriticalWriteRequestMsg refusedCriticalWriteRequestMsg = ongoingCritWrites.remove(msg.getKey());
-                ActorRef child_1 = refusedCriticalWriteRequestMsg.getLast();
+                ActorRef child_1 = critWriteRequesters.remove(refusedCriticalWriteRequestMsg.getRequestId());
 
                 // send write response with value isRefused = true
                 CriticalWriteResponseMsg refusedCriticalWriteResponseMsg = new CriticalWriteResponseMsg(refusedCriticalWriteRequestMsg.getKey(), refusedCriticalWriteRequestMsg.getValue(), refusedCriticalWriteRequestMsg.getPath(), refusedCriticalWriteRequestMsg.getRequestId(), true);
@@ -705,6 +846,7 @@ public class Database extends AbstractActor {
                 childrenConfirmedWriteByKey.remove(msg.getKey());
 
                 child_1.tell(refusedCriticalWriteResponseMsg, getSelf());
+                appliedWrite(refusedCriticalWriteRequestMsg.getRequestId(), true);
                 log.info("[DATABASE " + id + "] Sending (NOT FULFILLED) write response to cache" + child_1.path().name());
 
                 break;
@@ -724,7 +866,7 @@ public class Database extends AbstractActor {
                 // crit_write abortion procedure
 
                 CriticalWriteRequestMsg acceptedCriticalWriteRequestMsg = ongoingCritWrites.remove(msg.getKey());
-                ActorRef child_2 = acceptedCriticalWriteRequestMsg.getLast();
+                ActorRef child_2 = critWriteRequesters.remove(acceptedCriticalWriteRequestMsg.getRequestId());
 
                 // send write response with value isRefused = true
                 CriticalWriteResponseMsg acceptedCriticalWriteResponseMsg = new CriticalWriteResponseMsg(acceptedCriticalWriteRequestMsg.getKey(), acceptedCriticalWriteRequestMsg.getValue(), acceptedCriticalWriteRequestMsg.getPath(), acceptedCriticalWriteRequestMsg.getRequestId(), false);
@@ -737,6 +879,7 @@ public class Database extends AbstractActor {
                 childrenConfirmedWriteByKey.remove(msg.getKey());
 
                 child_2.tell(acceptedCriticalWriteResponseMsg, getSelf());
+                appliedWrite(acceptedCriticalWriteRequestMsg.getRequestId(), false);
                 log.info("[DATABASE " + id + "] Sending (FULFILLED) write response to cache" + child_2.path().name());
 
                 break;
@@ -754,7 +897,11 @@ public class Database extends AbstractActor {
         // get the values for the keys in the message
         for (Integer key : msg.getKeys()){
             System.out.println("[database] onRequestUpdatedDataMsg, key: " + key);
-            tmpData.put(key, getData(key));
+            int value = getData(key);
+            // keys that are not stored in the database are not sent back
+            if (value != IntIntMap.MISSING) {
+                tmpData.put(key, value);
+            }
         }
 
         getSender().tell(new ResponseUpdatedDataMsg(tmpData), getSelf());
@@ -791,4 +938,14 @@ public class Database extends AbstractActor {
         }
     }
 
+    // a L2 cache went back to its recovered L1 parent: its writes and fills go through the L1 cache again
+    private void onRequestDisconnectionMsg(RequestDisconnectionMsg msg) {
+        if ("L2".equals(msg.getType())) {
+            removeL2_cache(getSender());
+            log.info("[DATABASE " + id + "] Removed " + getSender().path().name() + " as a child, L2 caches connected directly: " + getL2_caches().size());
+        } else {
+            log.info("[DATABASE " + id + "] Received a request disconnection message from " + getSender().path().name() + " with invalid type");
+        }
+    }
+
 }
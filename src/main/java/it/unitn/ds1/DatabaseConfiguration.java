@@ -6,22 +6,55 @@ import java.util.List;
 public class DatabaseConfiguration {
     private List<TimeoutConfiguration> timeouts = new ArrayList<>();
 
+    // default (fifo) or priority, see PriorityMailbox
+    private String mailbox = "default";
+
+    // requests waiting in the mailbox before new ones are shed with an overloaded response, 0 means unbounded
+    private int mailboxCapacity = 0;
+
+    // requestIds of the last writes remembered to answer a retried write without applying it again, 0 disables it
+    private int deduplicationWindow = 1024;
+
     public List<TimeoutConfiguration> getTimeouts() {
         return timeouts;
     }
 
     public void setTimeouts(List<TimeoutConfiguration> timeouts) {
         for(TimeoutConfiguration timeout: timeouts){
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
 
+    public String getMailbox() {
+        return mailbox;
+    }
+
+    public void setMailbox(String mailbox) {
+        this.mailbox = mailbox;
+    }
+
+    public int getMailboxCapacity() {
+        return mailboxCapacity;
+    }
+
+    public void setMailboxCapacity(int mailboxCapacity) {
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
+    public int getDeduplicationWindow() {
+        return deduplicationWindow;
+    }
+
+    public void setDeduplicationWindow(int deduplicationWindow) {
+        this.deduplicationWindow = deduplicationWindow;
+    }
+
     public DatabaseConfiguration(){}
 
     public DatabaseConfiguration(List<TimeoutConfiguration> timeouts) {
         for (TimeoutConfiguration timeout : timeouts) {
-            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue());
+            TimeoutConfiguration tmp = new TimeoutConfiguration(timeout.getType(), timeout.getValue(), timeout.getMinMillis());
             this.timeouts.add(tmp);
         }
     }
@@ -2,6 +2,8 @@ package it.unitn.ds1;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 
 import it.unitn.ds1.Message.*;
 
@@ -72,6 +74,17 @@ public class DistributedCacheSystem {
 
     }
 
+    // application.conf plus the mailboxes of each level, configured in config.yaml
+    private Config actorSystemConfig() {
+        CacheConfiguration l1 = configuration.getL1Caches();
+        CacheConfiguration l2 = configuration.getL2Caches();
+        DatabaseConfiguration database = configuration.getDatabase();
+        return PriorityMailbox.config(Cache.mailboxId("L1"), l1.getMailbox(), l1.getMailboxCapacity())
+                .withFallback(PriorityMailbox.config(Cache.mailboxId("L2"), l2.getMailbox(), l2.getMailboxCapacity()))
+                .withFallback(PriorityMailbox.config(Database.MAILBOX_ID, database.getMailbox(), database.getMailboxCapacity()))
+                .withFallback(ConfigFactory.load());
+    }
+
     private int randomRangeRandom(int max) {
         int start = 1;
         Random random = new Random();
@@ -79,10 +92,10 @@ public class DistributedCacheSystem {
     }
 
     public void buildCustomSystem(){
-        this.system = ActorSystem.create("distributed_cache_system");
+        this.system = ActorSystem.create("distributed_cache_system", actorSystemConfig());
         System.out.println("Custom system creation!");
         // Build database
-        this.databaseActor = system.actorOf(Database.props(0, configuration.getDatabase().getTimeouts()));
+        this.databaseActor = system.actorOf(Database.props(0, configuration.getDatabase().getTimeouts(), configuration.getLatencies(), configuration.getDatabase().getMailbox(), configuration.getDatabase().getMailboxCapacity(), configuration.getDatabase().getDeduplicationWindow()));
 
         // Build L1 caches up to maxNum
 
@@ -92,7 +105,8 @@ public class DistributedCacheSystem {
             this.l1CacheActors.add(system.actorOf(Cache.props(i,
                     "L1",
                     databaseActor,
-                    configuration.getL1Caches().getTimeouts())));
+                    configuration.getL1Caches(),
+                    configuration.getLatencies())));
         }
 
         // Build L2 caches up to maxNum for each L1 cache
@@ -117,7 +131,9 @@ public class DistributedCacheSystem {
                         "L2",
                         l1Cache,
                         databaseActor,
-                        configuration.getL2Caches().getTimeouts())));
+                        this.l1CacheActors,
+                        configuration.getL2Caches(),
+                        configuration.getLatencies())));
             }
             totalL2Caches += l2Num;
         }
@@ -147,7 +163,11 @@ public class DistributedCacheSystem {
                 this.clientActors.add(system.actorOf(Client.props(i+totalClients,
                         l2Cache,
                         configuration.getClients().getTimeouts(),
-                        l2CacheActors)));
+                        l2CacheActors,
+                        configuration.getLatencies(),
+                        configuration.getClients().getHopLocalRouting(),
+                        configuration.getClients().getWindow(),
+                        configuration.getClients().getOverloadBackoff())));
             }
             totalClients += clientNum;
         }
@@ -164,10 +184,10 @@ public class DistributedCacheSystem {
 
         System.out.println("Automatic system creation!");
         boolean isUnbalanced = configuration.getSystemProperty().getUnbalanced();
-        this.system = ActorSystem.create("distributed_cache_system");
+        this.system = ActorSystem.create("distributed_cache_system", actorSystemConfig());
 
         // Build database
-        this.databaseActor = system.actorOf(Database.props(0, configuration.getDatabase().getTimeouts()));
+        this.databaseActor = system.actorOf(Database.props(0, configuration.getDatabase().getTimeouts(), configuration.getLatencies(), configuration.getDatabase().getMailbox(), configuration.getDatabase().getMailboxCapacity(), configuration.getDatabase().getDeduplicationWindow()));
 
         // Build L1 caches up to maxNum
         int l1_num;
@@ -182,7 +202,8 @@ public class DistributedCacheSystem {
             this.l1CacheActors.add(system.actorOf(Cache.props(i,
                     "L1",
                     databaseActor,
-                    configuration.getL1Caches().getTimeouts())));
+                    configuration.getL1Caches(),
+                    configuration.getLatencies())));
         }
 
         // Build L2 caches up to maxNum for each L1 cache
@@ -205,7 +226,9 @@ public class DistributedCacheSystem {
                         "L2",
                         l1Cache,
                         databaseActor,
-                        configuration.getL2Caches().getTimeouts())));
+                        this.l1CacheActors,
+                        configuration.getL2Caches(),
+                        configuration.getLatencies())));
             }
             total_l2_caches += l2_num;
         }
@@ -229,7 +252,11 @@ public class DistributedCacheSystem {
                 this.clientActors.add(system.actorOf(Client.props(i+total_clients,
                         l2Cache,
                         configuration.getClients().getTimeouts(),
-                        l2CacheActors)));
+                        l2CacheActors,
+                        configuration.getLatencies(),
+                        configuration.getClients().getHopLocalRouting(),
+                        configuration.getClients().getWindow(),
+                        configuration.getClients().getOverloadBackoff())));
             }
             total_clients += client_num;
         }
@@ -0,0 +1,40 @@
+package it.unitn.ds1;
+
+// policy used by a bounded cache to choose which key must leave when a new key arrives
+// the policy only tracks keys, values are stored by the cache itself
+public interface EvictionPolicy {
+
+    // a new key has been stored in the cache
+    void onInsert(int key);
+
+    // a key already stored in the cache has been read or updated
+    void onAccess(int key);
+
+    // a key has been removed from the cache (eviction, critical write, etc.)
+    void onRemove(int key);
+
+    // key that should be evicted next, the key is NOT removed from the policy
+    // the cache is expected to call onRemove once the key has been effectively removed
+    int victim();
+
+    // number of keys tracked by the policy
+    int size();
+
+    void clear();
+
+    static EvictionPolicy create(String type) {
+        if (type == null) {
+            return new LRUEvictionPolicy();
+        }
+        switch (type.toLowerCase()) {
+            case "lru":
+                return new LRUEvictionPolicy();
+            case "lfu":
+                return new LFUEvictionPolicy();
+            case "fifo":
+                return new FIFOEvictionPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown eviction policy: " + type);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package it.unitn.ds1;
+
+// first in first out: the victim is the oldest key stored, accesses do not change the order
+public class FIFOEvictionPolicy implements EvictionPolicy {
+
+    private final IntLinkedSet keys = new IntLinkedSet();
+
+    @Override
+    public void onInsert(int key) {
+        this.keys.addLast(key);
+    }
+
+    @Override
+    public void onAccess(int key) {
+        // insertion order only
+    }
+
+    @Override
+    public void onRemove(int key) {
+        this.keys.remove(key);
+    }
+
+    @Override
+    public int victim() {
+        return this.keys.first();
+    }
+
+    @Override
+    public int size() {
+        return this.keys.size();
+    }
+
+    @Override
+    public void clear() {
+        this.keys.clear();
+    }
+}
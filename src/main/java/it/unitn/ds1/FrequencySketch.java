@@ -0,0 +1,90 @@
+package it.unitn.ds1;
+
+import java.util.Arrays;
+
+// count-min sketch with 4-bit saturating counters, used to estimate how often a key has been requested
+// the counters are periodically halved (aging), so that keys that were popular long ago lose their weight
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    // one seed for each row of the sketch
+    private static final int[] SEEDS = {0x97cb3127, 0xb7a4b6a5, 0x5c2f8e4b, 0x2d9a7c31};
+
+    // two 4-bit counters are packed in each byte
+    private final byte[][] table;
+    private final int mask;
+
+    // after sampleSize increments, all counters are halved
+    private final int sampleSize;
+    private int additions = 0;
+
+    public FrequencySketch(int capacity) {
+        // width is a power of two, at least as large as the number of keys in the cache
+        int width = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        this.mask = width - 1;
+        this.table = new byte[DEPTH][width / 2];
+        this.sampleSize = 10 * Math.max(16, capacity);
+    }
+
+    public void increment(int key) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(key, row);
+            int count = getCounter(row, index);
+            if (count < MAX_COUNT) {
+                setCounter(row, index, count + 1);
+                added = true;
+            }
+        }
+        if (added && ++this.additions >= this.sampleSize) {
+            reset();
+        }
+    }
+
+    // estimated number of requests for the key, the minimum among the rows
+    public int frequency(int key) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, getCounter(row, indexOf(key, row)));
+        }
+        return frequency;
+    }
+
+    public void clear() {
+        for (byte[] row : this.table) {
+            Arrays.fill(row, (byte) 0);
+        }
+        this.additions = 0;
+    }
+
+    // halve every counter
+    private void reset() {
+        for (byte[] row : this.table) {
+            for (int i = 0; i < row.length; i++) {
+                int low = (row[i] & 0x0f) >>> 1;
+                int high = ((row[i] >>> 4) & 0x0f) >>> 1;
+                row[i] = (byte) ((high << 4) | low);
+            }
+        }
+        this.additions /= 2;
+    }
+
+    private int indexOf(int key, int row) {
+        int hash = (key ^ SEEDS[row]) * 0x9e3779b9;
+        hash ^= hash >>> 16;
+        return hash & this.mask;
+    }
+
+    private int getCounter(int row, int index) {
+        int shift = (index & 1) << 2;
+        return (this.table[row][index >>> 1] >>> shift) & 0x0f;
+    }
+
+    private void setCounter(int row, int index, int value) {
+        int shift = (index & 1) << 2;
+        int cell = this.table[row][index >>> 1] & ~(0x0f << shift);
+        this.table[row][index >>> 1] = (byte) (cell | (value << shift));
+    }
+}
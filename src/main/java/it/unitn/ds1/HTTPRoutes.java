@@ -96,6 +96,9 @@ public class HTTPRoutes extends AllDirectives {
         public String operation;
         public Integer key;
         public Integer value;
+        public Integer ttl; // optional, seconds, only for write and multi_write
+        public List<Integer> keys; // only for multi_read and multi_write
+        public List<Integer> values; // only for multi_write, values[i] is the value of keys[i]
     }
 
     public Route clientOperations(DistributedCacheSystem system) {
@@ -110,7 +113,7 @@ public class HTTPRoutes extends AllDirectives {
                                 return completeOK(message, Jackson.marshaller());
                             }
 
-                            if (payload.key == null) {
+                            if (payload.key == null && !payload.operation.startsWith("multi_")) {
                                 ObjectNode message = JsonNodeFactory.instance.objectNode();
                                 String value = "Key not found";
                                 message.put("message", value);
@@ -146,6 +149,15 @@ public class HTTPRoutes extends AllDirectives {
                                 case "read":
                                     foundClient.tell(new StartReadRequestMsg(payload.key), ActorRef.noSender());
                                     break;
+                                case "multi_read":
+                                    if (payload.keys == null || payload.keys.isEmpty()) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Keys not found";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    foundClient.tell(new StartMultiReadRequestMsg(payload.keys.stream().mapToInt(Integer::intValue).toArray()), ActorRef.noSender());
+                                    break;
                                 case "write":
                                     if (payload.value == null) {
                                         ObjectNode message = JsonNodeFactory.instance.objectNode();
@@ -153,7 +165,42 @@ public class HTTPRoutes extends AllDirectives {
                                         message.put("message", value);
                                         return completeOK(message, Jackson.marshaller());
                                     }
-                                    foundClient.tell(new StartWriteMsg(payload.key, payload.value), ActorRef.noSender());
+                                    if (payload.value == IntIntMap.MISSING) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Value " + IntIntMap.MISSING + " not allowed";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    if (payload.ttl != null && (payload.ttl < 0 || payload.ttl > Cache.MAX_TTL)) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Ttl must be between 0 and " + Cache.MAX_TTL + " seconds";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    int ttl = (payload.ttl != null) ? payload.ttl : 0;
+                                    foundClient.tell(new StartWriteMsg(payload.key, payload.value, ttl), ActorRef.noSender());
+                                    break;
+                                case "multi_write":
+                                    if (payload.keys == null || payload.keys.isEmpty() || payload.values == null || payload.values.size() != payload.keys.size()) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Keys and values not found or of different length";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    if (payload.values.contains(IntIntMap.MISSING)) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Value " + IntIntMap.MISSING + " not allowed";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    if (payload.ttl != null && (payload.ttl < 0 || payload.ttl > Cache.MAX_TTL)) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Ttl must be between 0 and " + Cache.MAX_TTL + " seconds";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
+                                    int multiTtl = (payload.ttl != null) ? payload.ttl : 0;
+                                    foundClient.tell(new StartMultiWriteMsg(payload.keys.stream().mapToInt(Integer::intValue).toArray(), payload.values.stream().mapToInt(Integer::intValue).toArray(), multiTtl), ActorRef.noSender());
                                     break;
                                 case "crit_read":
                                     foundClient.tell(new StartCriticalReadRequestMsg(payload.key), ActorRef.noSender());
@@ -165,6 +212,12 @@ public class HTTPRoutes extends AllDirectives {
                                         message.put("message", value);
                                         return completeOK(message, Jackson.marshaller());
                                     }
+                                    if (payload.value == IntIntMap.MISSING) {
+                                        ObjectNode message = JsonNodeFactory.instance.objectNode();
+                                        String value = "Value " + IntIntMap.MISSING + " not allowed";
+                                        message.put("message", value);
+                                        return completeOK(message, Jackson.marshaller());
+                                    }
                                     foundClient.tell(new StartCriticalWriteRequestMsg(payload.key, payload.value), ActorRef.noSender());
                                     break;
                                 default:
@@ -176,7 +229,11 @@ public class HTTPRoutes extends AllDirectives {
 
                             // Finally, return a response
                             ObjectNode message = JsonNodeFactory.instance.objectNode();
-                            if (payload.operation.equals("read") || payload.operation.equals("crit_read")) {
+                            if (payload.operation.equals("multi_read")) {
+                                message.put("message", "Client: " + id + " contacted to perform " + payload.operation + " on keys: " + payload.keys);
+                            } else if (payload.operation.equals("multi_write")) {
+                                message.put("message", "Client: " + id + " contacted to perform " + payload.operation + " on keys: " + payload.keys + " with values: " + payload.values);
+                            } else if (payload.operation.equals("read") || payload.operation.equals("crit_read")) {
                                 message.put("message", "Client: " + id + " contacted to perform " + payload.operation + " on key: " + payload.key);
                             } else {
                                 message.put("message", "Client: " + id + " contacted to perform " + payload.operation + " on key: " + payload.key + " with value: " + payload.value);
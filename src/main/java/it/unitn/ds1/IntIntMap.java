@@ -0,0 +1,261 @@
+package it.unitn.ds1;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// open-addressing map from int keys to int values, with linear probing
+// unlike HashMap<Integer, Integer> there are no boxed keys/values nor entry nodes,
+// so reads never allocate and each entry takes 8 bytes (plus the free slots of the table)
+public class IntIntMap implements IntIntStore {
+
+    // key used to mark a free slot, the entry with this key (if any) is stored outside the table
+    private static final int FREE_KEY = 0;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+
+    private boolean hasFreeKey = false;
+    private int freeKeyValue = MISSING;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) - 1) << 1);
+        allocate(capacity);
+    }
+
+    public IntIntMap(Map<Integer, Integer> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    @Override
+    public int get(int key) {
+        if (key == FREE_KEY) {
+            return this.hasFreeKey ? this.freeKeyValue : MISSING;
+        }
+        int slot = slotOf(key);
+        return slot < 0 ? MISSING : this.values[slot];
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return this.hasFreeKey;
+        }
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public int put(int key, int value) {
+        if (value == MISSING) {
+            throw new IllegalArgumentException("IntIntMap.MISSING can not be stored as a value");
+        }
+        if (key == FREE_KEY) {
+            int previous = this.hasFreeKey ? this.freeKeyValue : MISSING;
+            if (!this.hasFreeKey) {
+                this.size++;
+            }
+            this.hasFreeKey = true;
+            this.freeKeyValue = value;
+            return previous;
+        }
+
+        int slot = hash(key) & this.mask;
+        while (this.keys[slot] != FREE_KEY) {
+            if (this.keys[slot] == key) {
+                int previous = this.values[slot];
+                this.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size > this.threshold) {
+            rehash(this.keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    public void putAll(Map<Integer, Integer> map) {
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!this.hasFreeKey) {
+                return MISSING;
+            }
+            this.hasFreeKey = false;
+            this.size--;
+            int previous = this.freeKeyValue;
+            this.freeKeyValue = MISSING;
+            return previous;
+        }
+
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return MISSING;
+        }
+        int previous = this.values[slot];
+        shiftKeys(slot);
+        this.size--;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    // number of slots of the table, the range of the cursor of scan
+    public int slots() {
+        return this.keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.keys, FREE_KEY);
+        this.hasFreeKey = false;
+        this.freeKeyValue = MISSING;
+        this.size = 0;
+    }
+
+    @Override
+    public void forEach(IntIntConsumer consumer) {
+        if (this.hasFreeKey) {
+            consumer.accept(FREE_KEY, this.freeKeyValue);
+        }
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            if (this.keys[slot] != FREE_KEY) {
+                consumer.accept(this.keys[slot], this.values[slot]);
+            }
+        }
+    }
+
+    @Override
+    public int[] keys() {
+        int[] result = new int[this.size];
+        int i = 0;
+        if (this.hasFreeKey) {
+            result[i++] = FREE_KEY;
+        }
+        for (int key : this.keys) {
+            if (key != FREE_KEY) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    // visits the entries of at most maxSlots slots of the table, starting from slot cursor
+    // returns the cursor for the next call, 0 once the whole table has been visited
+    // the map must not be modified by the consumer, but it can be modified between two calls
+    // (in that case an entry moved by a removal or a rehash may be skipped or visited twice in the same round)
+    public int scan(int cursor, int maxSlots, IntIntConsumer consumer) {
+        if (cursor == 0 && this.hasFreeKey) {
+            consumer.accept(FREE_KEY, this.freeKeyValue);
+        }
+        if (cursor >= this.keys.length) {
+            return 0;
+        }
+        int end = Math.min(this.keys.length, cursor + maxSlots);
+        for (int slot = cursor; slot < end; slot++) {
+            if (this.keys[slot] != FREE_KEY) {
+                consumer.accept(this.keys[slot], this.values[slot]);
+            }
+        }
+        return end == this.keys.length ? 0 : end;
+    }
+
+    @Override
+    public Map<Integer, Integer> toMap() {
+        Map<Integer, Integer> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    // ----------TABLE LOGIC----------
+
+    // shared with OffHeapIntIntStore
+    static int hash(int key) {
+        int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(int key) {
+        int slot = hash(key) & this.mask;
+        while (this.keys[slot] != FREE_KEY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    // backward shift deletion: move back the following entries of the probe sequence, so that no tombstone is needed
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & this.mask;
+            while (true) {
+                int key = this.keys[slot];
+                if (key == FREE_KEY) {
+                    this.keys[last] = FREE_KEY;
+                    return;
+                }
+                int ideal = hash(key) & this.mask;
+                // the entry can be moved to last only if last is between its ideal slot and its current slot
+                if (last <= slot ? (last >= ideal || ideal > slot) : (last >= ideal && ideal > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[last] = this.keys[slot];
+            this.values[last] = this.values[slot];
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocate(newCapacity);
+        this.size = this.hasFreeKey ? 1 : 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE_KEY) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.unitn.ds1;
+
+import java.util.Map;
+
+// key-value store of int keys and int values used by caches and database
+// heap: IntIntMap, arrays on the java heap
+// offheap: OffHeapIntIntStore, direct memory not scanned by the garbage collector
+public interface IntIntStore {
+
+    // value returned when a key is not present, it can not be stored as a value
+    int MISSING = Integer.MIN_VALUE;
+
+    interface IntIntConsumer {
+        void accept(int key, int value);
+    }
+
+    // returns MISSING if the key is not present
+    int get(int key);
+
+    boolean containsKey(int key);
+
+    // returns the previous value, or MISSING
+    int put(int key, int value);
+
+    // returns the removed value, or MISSING
+    int remove(int key);
+
+    int size();
+
+    boolean isEmpty();
+
+    void clear();
+
+    void forEach(IntIntConsumer consumer);
+
+    int[] keys();
+
+    // boxed copy, used when the content must travel inside a message
+    Map<Integer, Integer> toMap();
+
+    // expectedSize is used to size the store up front (0 if unknown)
+    static IntIntStore create(String type, int expectedSize) {
+        if (type == null) {
+            return new IntIntMap(expectedSize);
+        }
+        switch (type.toLowerCase()) {
+            case "heap":
+                return new IntIntMap(expectedSize);
+            case "offheap":
+                return new OffHeapIntIntStore(expectedSize);
+            default:
+                throw new IllegalArgumentException("Unknown storage: " + type);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package it.unitn.ds1;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// ordered set of int keys backed by a doubly linked list stored in arrays
+// used by the eviction policies to keep keys in insertion/access order without boxing
+public class IntLinkedSet {
+
+    private static final int NONE = -1;
+
+    // key -> index of its node
+    private final IntIntMap nodes = new IntIntMap();
+
+    private int[] keys;
+    private int[] prev;
+    private int[] next;
+
+    private int head = NONE;
+    private int tail = NONE;
+
+    // free nodes are chained through next
+    private int free = NONE;
+    private int used = 0;
+
+    public IntLinkedSet() {
+        this.keys = new int[16];
+        this.prev = new int[16];
+        this.next = new int[16];
+    }
+
+    public boolean contains(int key) {
+        return this.nodes.containsKey(key);
+    }
+
+    // adds the key at the tail, returns false if the key was already present
+    public boolean addLast(int key) {
+        if (this.nodes.containsKey(key)) {
+            return false;
+        }
+        int node = allocateNode();
+        this.keys[node] = key;
+        linkLast(node);
+        this.nodes.put(key, node);
+        return true;
+    }
+
+    // moves an existing key to the tail
+    public void moveToLast(int key) {
+        int node = this.nodes.get(key);
+        if (node == IntIntMap.MISSING || node == this.tail) {
+            return;
+        }
+        unlink(node);
+        linkLast(node);
+    }
+
+    public boolean remove(int key) {
+        int node = this.nodes.remove(key);
+        if (node == IntIntMap.MISSING) {
+            return false;
+        }
+        unlink(node);
+        this.next[node] = this.free;
+        this.free = node;
+        return true;
+    }
+
+    public int first() {
+        if (this.head == NONE) {
+            throw new NoSuchElementException("Empty set");
+        }
+        return this.keys[this.head];
+    }
+
+    public int pollFirst() {
+        int key = first();
+        remove(key);
+        return key;
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return this.nodes.isEmpty();
+    }
+
+    public void clear() {
+        this.nodes.clear();
+        this.head = NONE;
+        this.tail = NONE;
+        this.free = NONE;
+        this.used = 0;
+    }
+
+    // ----------LIST LOGIC----------
+
+    private int allocateNode() {
+        if (this.free != NONE) {
+            int node = this.free;
+            this.free = this.next[node];
+            return node;
+        }
+        if (this.used == this.keys.length) {
+            int capacity = this.keys.length << 1;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.prev = Arrays.copyOf(this.prev, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        return this.used++;
+    }
+
+    private void linkLast(int node) {
+        this.prev[node] = this.tail;
+        this.next[node] = NONE;
+        if (this.tail == NONE) {
+            this.head = node;
+        } else {
+            this.next[this.tail] = node;
+        }
+        this.tail = node;
+    }
+
+    private void unlink(int node) {
+        int before = this.prev[node];
+        int after = this.next[node];
+        if (before == NONE) {
+            this.head = after;
+        } else {
+            this.next[before] = after;
+        }
+        if (after == NONE) {
+            this.tail = before;
+        } else {
+            this.prev[after] = before;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package it.unitn.ds1;
+
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+// least frequently used: the victim is the key with the lowest number of accesses
+// ties are broken by insertion order (the oldest key among the least used ones is evicted)
+public class LFUEvictionPolicy implements EvictionPolicy {
+
+    // key -> number of accesses
+    private final IntIntMap frequencies = new IntIntMap();
+
+    // number of accesses -> keys with that number of accesses, in arrival order
+    private final TreeMap<Integer, IntLinkedSet> buckets = new TreeMap<>();
+
+    @Override
+    public void onInsert(int key) {
+        if (this.frequencies.containsKey(key)) {
+            onAccess(key);
+            return;
+        }
+        this.frequencies.put(key, 1);
+        this.buckets.computeIfAbsent(1, f -> new IntLinkedSet()).addLast(key);
+    }
+
+    @Override
+    public void onAccess(int key) {
+        int frequency = this.frequencies.get(key);
+        if (frequency == IntIntMap.MISSING) {
+            return;
+        }
+        removeFromBucket(key, frequency);
+        this.frequencies.put(key, frequency + 1);
+        this.buckets.computeIfAbsent(frequency + 1, f -> new IntLinkedSet()).addLast(key);
+    }
+
+    @Override
+    public void onRemove(int key) {
+        int frequency = this.frequencies.remove(key);
+        if (frequency != IntIntMap.MISSING) {
+            removeFromBucket(key, frequency);
+        }
+    }
+
+    @Override
+    public int victim() {
+        if (this.buckets.isEmpty()) {
+            throw new NoSuchElementException("No key to evict");
+        }
+        return this.buckets.firstEntry().getValue().first();
+    }
+
+    @Override
+    public int size() {
+        return this.frequencies.size();
+    }
+
+    @Override
+    public void clear() {
+        this.frequencies.clear();
+        this.buckets.clear();
+    }
+
+    private void removeFromBucket(int key, int frequency) {
+        IntLinkedSet bucket = this.buckets.get(frequency);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            this.buckets.remove(frequency);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package it.unitn.ds1;
+
+// least recently used: the victim is the key that has not been read or written for the longest time
+public class LRUEvictionPolicy implements EvictionPolicy {
+
+    // access order, the first key is the least recently used one
+    private final IntLinkedSet keys = new IntLinkedSet();
+
+    @Override
+    public void onInsert(int key) {
+        if (!this.keys.addLast(key)) {
+            this.keys.moveToLast(key);
+        }
+    }
+
+    @Override
+    public void onAccess(int key) {
+        this.keys.moveToLast(key);
+    }
+
+    @Override
+    public void onRemove(int key) {
+        this.keys.remove(key);
+    }
+
+    @Override
+    public int victim() {
+        return this.keys.first();
+    }
+
+    @Override
+    public int size() {
+        return this.keys.size();
+    }
+
+    @Override
+    public void clear() {
+        this.keys.clear();
+    }
+}
@@ -0,0 +1,71 @@
+package it.unitn.ds1;
+
+// simulated latency of a link, see LatencyInjector
+// link: client_l2, l2_l1, l1_db or l2_db
+// distribution: constant (min), uniform (between min and max), normal (mean and stddev, never below min)
+// or exponential (min plus an exponential delay with the given mean), all the values are in milliseconds
+public class LatencyConfiguration {
+    private String link;
+    private String distribution;
+    private int min;
+    private int max;
+    private int mean;
+    private int stddev;
+
+    public String getLink() {
+        return link;
+    }
+
+    public void setLink(String link) {
+        this.link = link;
+    }
+
+    public String getDistribution() {
+        return distribution;
+    }
+
+    public void setDistribution(String distribution) {
+        this.distribution = distribution;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public void setMin(int min) {
+        this.min = min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public void setMax(int max) {
+        this.max = max;
+    }
+
+    public int getMean() {
+        return mean;
+    }
+
+    public void setMean(int mean) {
+        this.mean = mean;
+    }
+
+    public int getStddev() {
+        return stddev;
+    }
+
+    public void setStddev(int stddev) {
+        this.stddev = stddev;
+    }
+
+    public LatencyConfiguration(){}
+
+    public LatencyConfiguration(String link, String distribution, int min, int max){
+        this.link = link;
+        this.distribution = distribution;
+        this.min = min;
+        this.max = max;
+    }
+}
@@ -0,0 +1,150 @@
+package it.unitn.ds1;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// adaptive timeouts, as the retransmission timeout of TCP (RFC 6298): for each operation type the latency of the
+// requests is smoothed (srtt) together with its variation (rttvar), and the timeout is srtt + 4 * rttvar,
+// bounded by [floor, ceiling] of the type: minMillis and value (seconds) in the timeouts of config.yaml
+// until the first sample, and for the types with floor == ceiling (minMillis not set), the timeout is the ceiling
+// only the requests sent once are sampled (Karn's algorithm): the latency of a request sent again
+// (after a timeout, a failover or an overload) cannot be matched with the send it answers
+public class LatencyEstimator {
+
+    private static final double ALPHA = 1.0 / 8;
+    private static final double BETA = 1.0 / 4;
+    private static final int K = 4;
+
+    // the quantiles are computed on the last RECENT_SAMPLES latencies, once MIN_QUANTILE_SAMPLES are known
+    private static final int RECENT_SAMPLES = 256;
+    private static final int MIN_QUANTILE_SAMPLES = 20;
+
+    // marks a request sent more than once in sentAt
+    private static final long RETRANSMITTED = -1;
+
+    private static final class Estimate {
+        private final long floor;
+        private final long ceiling;
+        private double srtt = -1;
+        private double rttvar;
+        private long samples;
+        private final long[] recent = new long[RECENT_SAMPLES];
+
+        Estimate(long floor, long ceiling) {
+            this.floor = floor;
+            this.ceiling = ceiling;
+        }
+
+        void sample(long latency) {
+            if (this.srtt < 0) {
+                this.srtt = latency;
+                this.rttvar = latency / 2.0;
+            } else {
+                this.rttvar = (1 - BETA) * this.rttvar + BETA * Math.abs(this.srtt - latency);
+                this.srtt = (1 - ALPHA) * this.srtt + ALPHA * latency;
+            }
+            this.recent[(int) (this.samples % RECENT_SAMPLES)] = latency;
+            this.samples++;
+        }
+
+        long quantile(double q) {
+            if (this.samples < MIN_QUANTILE_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(this.recent, (int) Math.min(this.samples, RECENT_SAMPLES));
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(q * sorted.length) - 1)];
+        }
+
+        long timeout() {
+            if (this.srtt < 0) {
+                return this.ceiling;
+            }
+            long rto = (long) Math.ceil(this.srtt + K * this.rttvar);
+            return Math.min(this.ceiling, Math.max(this.floor, rto));
+        }
+    }
+
+    private final Map<String, Estimate> estimates = new HashMap<>();
+
+    // requestId -> time the request was sent (ms), or RETRANSMITTED
+    private final Map<Long, Long> sentAt = new HashMap<>();
+
+    public void setBounds(String type, long floorMillis, long ceilingMillis) {
+        this.estimates.put(type, new Estimate(Math.min(floorMillis, ceilingMillis), ceilingMillis));
+    }
+
+    public void setBounds(TimeoutConfiguration timeout) {
+        long ceiling = timeout.getValue() * 1000L;
+        long floor = timeout.getMinMillis() > 0 ? timeout.getMinMillis() : ceiling;
+        setBounds(timeout.getType(), floor, ceiling);
+    }
+
+    public Duration timeout(String type) {
+        return Duration.ofMillis(this.estimates.get(type).timeout());
+    }
+
+    // the request has been sent (again) and a timeout started for it
+    public void sent(long requestId) {
+        this.sentAt.merge(requestId, now(), (previous, current) -> RETRANSMITTED);
+    }
+
+    // the response of the request arrived: the latency is sampled if the request was sent once
+    public void answered(String type, long requestId) {
+        Long sent = this.sentAt.remove(requestId);
+        Estimate estimate = this.estimates.get(type);
+        if (sent == null || sent == RETRANSMITTED || estimate == null) {
+            return;
+        }
+        estimate.sample(now() - sent);
+    }
+
+    // latency measured by the caller, e.g. of the first send of a request sent more than once
+    public void sample(String type, long latency) {
+        Estimate estimate = this.estimates.get(type);
+        if (estimate != null) {
+            estimate.sample(latency);
+        }
+    }
+
+    // latency (ms) below which the fraction q of the recent requests of the type was answered,
+    // -1 if too few requests were sampled
+    public long quantile(String type, double q) {
+        Estimate estimate = this.estimates.get(type);
+        return estimate == null ? -1 : estimate.quantile(q);
+    }
+
+    // the request timed out, was sent elsewhere or dropped: its latency is not sampled
+    public void forget(long requestId) {
+        this.sentAt.remove(requestId);
+    }
+
+    public void clear() {
+        this.sentAt.clear();
+    }
+
+    public static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    // e.g. "read 512 ms (srtt 120, rttvar 98, 40 samples)"
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Estimate> entry : this.estimates.entrySet()) {
+            Estimate estimate = entry.getValue();
+            if (estimate.samples == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(' ').append(estimate.timeout()).append(" ms (srtt ")
+                    .append(Math.round(estimate.srtt)).append(", rttvar ").append(Math.round(estimate.rttvar))
+                    .append(", ").append(estimate.samples).append(" samples)");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package it.unitn.ds1;
+
+import akka.actor.AbstractActor.Receive;
+import akka.actor.ActorContext;
+import akka.actor.ActorRef;
+import akka.japi.pf.ReceiveBuilder;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.BiFunction;
+
+// simulated network latency, applied by the receiver without ever blocking a thread
+// a message coming from another actor of the system is not handled right away: it is queued and the scheduler
+// wakes the actor up when the delay sampled for its link (client_l2, l2_l1, l1_db, l2_db) has elapsed
+// messages from the same sender are delivered in the order they were sent (FIFO per link, as in akka)
+// with a priority mailbox, in the order they were sent within each class of PriorityMailbox: a protocol message
+// is not held back behind the requests sent before it, which the mailbox would let it overtake anyway
+// messages sent by the actor to itself (e.g. timeouts) and by actors outside the hierarchy (e.g. master) are not delayed
+// the delayed requests are still waiting for the actor: they count toward the capacity of its PriorityMailbox
+public class LatencyInjector {
+
+    public static final String CLIENT_L2 = "client_l2";
+    public static final String L2_L1 = "l2_l1";
+    public static final String L1_DB = "l1_db";
+    public static final String L2_DB = "l2_db";
+
+    // wake up sent by the scheduler, with the sender of the queued message as sender
+    // it has the priority of the message it delivers, for the actors using the PriorityMailbox
+    private static final class DeliveryMsg implements Serializable, PriorityMailbox.Prioritized {
+        private final int priority;
+
+        DeliveryMsg(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public int priority() {
+            return this.priority;
+        }
+    }
+
+    private static final class Pending {
+        private final Object message;
+        private final long deliverAt;
+
+        Pending(Object message, long deliverAt) {
+            this.message = message;
+            this.deliverAt = deliverAt;
+        }
+    }
+
+    private final ActorContext context;
+
+    // (sender, message) -> link, null if the message is not delayed
+    private final BiFunction<ActorRef, Object, String> linkOf;
+
+    private final Map<String, LatencyConfiguration> latencies = new HashMap<>();
+
+    // class of PriorityMailbox -> sender -> messages waiting for their delivery, only the head is scheduled
+    private final List<Map<ActorRef, ArrayDeque<Pending>>> pending = List.of(new HashMap<>(), new HashMap<>(), new HashMap<>());
+
+    private final Random rnd = new Random();
+
+    public LatencyInjector(ActorContext context, List<LatencyConfiguration> latencies, BiFunction<ActorRef, Object, String> linkOf) {
+        this.context = context;
+        this.linkOf = linkOf;
+        if (latencies != null) {
+            for (LatencyConfiguration latency : latencies) {
+                this.latencies.put(latency.getLink(), latency);
+            }
+        }
+    }
+
+    // the returned behavior delays the incoming messages, which are then handled by the given behavior
+    // the behavior in use at delivery time handles the message (e.g. the crashed one of a cache)
+    public Receive wrap(Receive behavior) {
+        return ReceiveBuilder.create()
+                .match(DeliveryMsg.class, msg -> deliver(behavior, msg.priority))
+                .match(Object.class, this::isDelayed, msg -> delay(behavior, msg))
+                .build()
+                .orElse(behavior);
+    }
+
+    private boolean isDelayed(Object msg) {
+        ActorRef sender = this.context.sender();
+        if (sender == this.context.self() || sender == this.context.system().deadLetters()) {
+            return false;
+        }
+        String link = this.linkOf.apply(sender, msg);
+        return link != null && this.latencies.containsKey(link);
+    }
+
+    private void delay(Receive behavior, Object msg) {
+        ActorRef sender = this.context.sender();
+        long now = System.currentTimeMillis();
+        long deliverAt = now + sample(this.latencies.get(this.linkOf.apply(sender, msg)));
+
+        int priority = priorityOf(msg);
+        ArrayDeque<Pending> queue = this.pending.get(priority).get(sender);
+        if (queue == null) {
+            if (deliverAt <= now) {
+                behavior.onMessage().apply(msg);
+                return;
+            }
+            hold(msg, 1);
+            queue = new ArrayDeque<>();
+            this.pending.get(priority).put(sender, queue);
+            Pending head = new Pending(msg, deliverAt);
+            queue.add(head);
+            schedule(sender, priority, deliverAt - now);
+        } else {
+            // a message never overtakes the ones sent before it
+            hold(msg, 1);
+            queue.add(new Pending(msg, Math.max(deliverAt, queue.peekLast().deliverAt)));
+        }
+    }
+
+    private void deliver(Receive behavior, int priority) {
+        ActorRef sender = this.context.sender();
+        ArrayDeque<Pending> queue = this.pending.get(priority).get(sender);
+        if (queue == null) {
+            return;
+        }
+        Pending head = queue.poll();
+        if (queue.isEmpty()) {
+            this.pending.get(priority).remove(sender);
+        } else {
+            schedule(sender, priority, Math.max(0, queue.peek().deliverAt - System.currentTimeMillis()));
+        }
+        hold(head.message, -1);
+        behavior.onMessage().apply(head.message);
+    }
+
+    private void hold(Object msg, int requests) {
+        if (msg instanceof Message.RequestMsg) {
+            PriorityMailbox.held(this.context.self(), requests);
+        }
+    }
+
+    // without a priority mailbox every message is in the CLIENT class, i.e. FIFO per sender
+    private int priorityOf(Object msg) {
+        return PriorityMailbox.isPrioritized(this.context.self()) ? PriorityMailbox.priorityOf(msg) : PriorityMailbox.CLIENT;
+    }
+
+    private void schedule(ActorRef sender, int priority, long delayMillis) {
+        this.context.system().scheduler().scheduleOnce(
+            Duration.ofMillis(delayMillis),
+            this.context.self(),
+            new DeliveryMsg(priority),
+            this.context.dispatcher(),
+            sender
+        );
+    }
+
+    // delay in milliseconds
+    private long sample(LatencyConfiguration latency) {
+        String distribution = latency.getDistribution() == null ? "constant" : latency.getDistribution().toLowerCase();
+        switch (distribution) {
+            case "constant":
+                return latency.getMin();
+            case "uniform":
+                return latency.getMin() + this.rnd.nextInt(Math.max(1, latency.getMax() - latency.getMin() + 1));
+            case "normal":
+                return Math.max(latency.getMin(), Math.round(latency.getMean() + latency.getStddev() * this.rnd.nextGaussian()));
+            case "exponential":
+                return latency.getMin() + Math.round(-latency.getMean() * Math.log(1 - this.rnd.nextDouble()));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + latency.getDistribution());
+        }
+    }
+}
@@ -7,8 +7,17 @@ import java.util.*;
 
 public class Message {
 
+    // implemented by all the messages, serialized by MessageSerializer (see application.conf)
+    public interface Protocol extends Serializable {}
+
+    // requests sent up the hierarchy, the only messages a bounded mailbox may shed (see PriorityMailbox)
+    public interface RequestMsg extends Protocol {
+        long getRequestId();
+        RequestPath getPath();
+    }
+
     // ----------GENERAL MESSAGES----------
-    public static class InitMsg implements Serializable{
+    public static class InitMsg implements Protocol {
         private final ActorRef id;
         private final String type;
 
@@ -26,12 +35,12 @@ public class Message {
         }
     }
 
-    public static class StartInitMsg implements Serializable{
+    public static class StartInitMsg implements Protocol {
         public StartInitMsg() {
         }
     }
 
-    public static class TimeoutMsg implements Serializable{
+    public static class TimeoutMsg implements Protocol {
 
         private final String type;
         private final long requestId;
@@ -67,7 +76,7 @@ public class Message {
 
     }
 
-    public static class DbTimeoutMsg implements Serializable{
+    public static class DbTimeoutMsg implements Protocol {
 
         private String type;
         private final int key;
@@ -93,7 +102,7 @@ public class Message {
 
     }
 
-    public static class DropTmpWriteDataMsg implements Serializable{
+    public static class DropTmpWriteDataMsg implements Protocol {
 
         private final int key;
 
@@ -106,19 +115,129 @@ public class Message {
         }
     }
 
-    public static class InfoMsg implements Serializable{
+    // periodic tick used by caches to remove expired keys, see Cache.onExpirySweepMsg
+    public static class ExpirySweepMsg implements Protocol {
+        public ExpirySweepMsg() {}
+    }
+
+    // sent by a L2 cache to itself when a read forwarded to the L1 parent at sentAt is late, see Cache.onHedgeReadMsg
+    public static class HedgeReadMsg implements Protocol {
+        private final long requestId;
+        private final long sentAt;
+
+        public HedgeReadMsg(long requestId, long sentAt) {
+            this.requestId = requestId;
+            this.sentAt = sentAt;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public long getSentAt() {
+            return sentAt;
+        }
+    }
+
+    // ----------HEARTBEAT MESSAGES----------
+
+    // periodic tick used by caches to send a heartbeat to the parent and check the failure detector,
+    // see Cache.onHeartbeatTickMsg
+    public static class HeartbeatTickMsg implements Protocol {
+        public HeartbeatTickMsg() {}
+    }
+
+    // sent by a cache to its parent (L1 cache or database), answered with a HeartbeatAckMsg
+    public static class HeartbeatMsg implements Protocol {
+        public HeartbeatMsg() {}
+    }
+
+    public static class HeartbeatAckMsg implements Protocol {
+        public HeartbeatAckMsg() {}
+    }
+
+    // sent by an orphaned L2 cache to the other L1 caches, to choose its new parent, see Cache.failover
+    public static class LoadRequestMsg implements Protocol {
+        public LoadRequestMsg() {}
+    }
+
+    // load of a L1 cache: requests in progress and children
+    public static class LoadResponseMsg implements Protocol {
+        private final int pendingRequests;
+        private final int children;
+
+        public LoadResponseMsg(int pendingRequests, int children) {
+            this.pendingRequests = pendingRequests;
+            this.children = children;
+        }
+
+        public int getPendingRequests() {
+            return pendingRequests;
+        }
+
+        public int getChildren() {
+            return children;
+        }
+    }
+
+    // sent by a L2 cache to itself when the L1 caches had time to tell their load, see Cache.selectParent
+    public static class SelectParentMsg implements Protocol {
+        public SelectParentMsg() {}
+    }
+
+    // sent by a client to itself to retry its operations, see Client.retryOperation
+    // all the operations in flight, or only the one of requestId (e.g. after an overloaded response)
+    public static class RetryOperationMsg implements Protocol {
+        public static final long ALL = -1;
+
+        private final long requestId;
+
+        public RetryOperationMsg() {
+            this(ALL);
+        }
+
+        public RetryOperationMsg(long requestId) {
+            this.requestId = requestId;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+    }
+
+    // sent back instead of the response when the mailbox of the receiver is full and the request is shed
+    // the path is the one of the request, the caches relay it down to the client that backs off and retries
+    public static class OverloadedResponseMsg implements Protocol {
+        private final RequestPath path;
+        private final long requestId;
+
+        public OverloadedResponseMsg(RequestPath path, long requestId) {
+            this.path = path;
+            this.requestId = requestId;
+        }
+
+        public RequestPath getPath() {
+            return path;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+    }
+
+    public static class InfoMsg implements Protocol {
         public InfoMsg() {}
     }
 
-    public static class StartHealthCheck implements Serializable{
+    public static class StartHealthCheck implements Protocol {
         public StartHealthCheck() {}
     }
 
-    public static class HealthCheckRequestMsg implements Serializable{
+    public static class HealthCheckRequestMsg implements Protocol {
         public HealthCheckRequestMsg() {}
     }
 
-    public static class HealthCheckResponseMsg implements Serializable{
+    public static class HealthCheckResponseMsg implements Protocol {
         private final Map<Integer, Integer> data;
         public HealthCheckResponseMsg(Map<Integer, Integer> data){
             this.data = data;
@@ -130,25 +249,25 @@ public class Message {
 
     }
 
-    public static class InfoItemsMsg implements Serializable {}
+    public static class InfoItemsMsg implements Protocol {}
 
-    public static class ClientOperationsListMsg implements Serializable {}
+    public static class ClientOperationsListMsg implements Protocol {}
 
 
     // ----------CRASH RELATED MESSAGES----------
-    public static class CrashMsg implements Serializable{
+    public static class CrashMsg implements Protocol {
         public CrashMsg() {}
     }
 
-    public static class RecoverMsg implements Serializable{
+    public static class RecoverMsg implements Protocol {
         public RecoverMsg() {}
     }
 
-    public static class RequestDataRecoverMsg implements Serializable{
+    public static class RequestDataRecoverMsg implements Protocol {
         public RequestDataRecoverMsg() {}
     }
 
-    public static class ResponseDataRecoverMsg implements Serializable{
+    public static class ResponseDataRecoverMsg implements Protocol {
         private final Map<Integer, Integer> data;
         private final ActorRef parent;
 
@@ -166,7 +285,7 @@ public class Message {
         }
     }
 
-    public static class RequestUpdatedDataMsg implements Serializable{
+    public static class RequestUpdatedDataMsg implements Protocol {
         private final Set<Integer> keys;
 
         public RequestUpdatedDataMsg(Set<Integer> keys) {
@@ -184,7 +303,7 @@ public class Message {
         }
     }
 
-    public static class ResponseUpdatedDataMsg implements Serializable{
+    public static class ResponseUpdatedDataMsg implements Protocol {
         private final Map<Integer, Integer> data;
 
         public ResponseUpdatedDataMsg(Map<Integer, Integer> data) {
@@ -196,7 +315,7 @@ public class Message {
         }
     }
 
-    public static class UpdateDataMsg implements Serializable{
+    public static class UpdateDataMsg implements Protocol {
         private final Map<Integer, Integer> data;
 
         public UpdateDataMsg(Map<Integer, Integer> data){
@@ -208,7 +327,7 @@ public class Message {
         }
     }
 
-    public static class RequestConnectionMsg implements Serializable{
+    public static class RequestConnectionMsg implements Protocol {
         private String type;
         public RequestConnectionMsg(){}
 
@@ -221,7 +340,7 @@ public class Message {
         }
     }
 
-    public static class ResponseConnectionMsg implements Serializable{
+    public static class ResponseConnectionMsg implements Protocol {
         private String response;
 
         public ResponseConnectionMsg(){}
@@ -235,10 +354,29 @@ public class Message {
         }
     }
 
-    public static class TimeoutElapsedMsg implements Serializable{
+    // sent by a L2 cache connected directly to the database when it goes back to its recovered L1 parent
+    public static class RequestDisconnectionMsg implements Protocol {
+        private final String type;
+
+        public RequestDisconnectionMsg(String type) {
+            this.type = type;
+        }
+
+        public String getType() {
+            return this.type;
+        }
+    }
+
+    // sent by a L1 cache to its children once recovered, see Cache.onParentRecoveredMsg
+    public static class ParentRecoveredMsg implements Protocol {
+        public ParentRecoveredMsg() {}
+    }
+
+    public static class TimeoutElapsedMsg implements Protocol {
         private int key;
         private int value;
         private String type;
+        private long requestId; // request of the client that needs more time
 
         public TimeoutElapsedMsg(){}
 
@@ -272,17 +410,25 @@ public class Message {
             this.type = type;
         }
 
+        public long getRequestId() {
+            return this.requestId;
+        }
+
+        public void setRequestId(long requestId) {
+            this.requestId = requestId;
+        }
+
     }
 
 
     // ----------DATABASE GENERAL MESSAGES----------
-    public static class CurrentDataMsg implements Serializable {}
+    public static class CurrentDataMsg implements Protocol {}
 
-    public static class DropDatabaseMsg implements Serializable {}
+    public static class DropDatabaseMsg implements Protocol {}
 
 
     // ----------READ MESSAGES----------
-    public static class DummyMsg implements Serializable {
+    public static class DummyMsg implements Protocol {
         private final int payload;
 
         public DummyMsg(int payload) {
@@ -295,7 +441,7 @@ public class Message {
 
     }
 
-    public static class StartReadRequestMsg implements Serializable {
+    public static class StartReadRequestMsg implements Protocol {
         public final int key;
 
         public StartReadRequestMsg(int key) {
@@ -303,16 +449,15 @@ public class Message {
         }
     }
 
-    public static class ReadRequestMsg implements Serializable {
+    public static class ReadRequestMsg implements RequestMsg {
         private final int key;
-        private final Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
 
-        public ReadRequestMsg(int key, Stack<ActorRef> path, long requestId) {
+        public ReadRequestMsg(int key, RequestPath path, long requestId) {
             this.key = key;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
         }
 
@@ -324,7 +469,7 @@ public class Message {
             return key;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -351,18 +496,17 @@ public class Message {
 
     }
 
-    public static class ReadResponseMsg implements Serializable {
+    public static class ReadResponseMsg implements Protocol {
         private final int key;
         private final int value;
-        private final Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
 
-        public ReadResponseMsg(int key, int value, List<ActorRef> path, long requestId) {
+        public ReadResponseMsg(int key, int value, RequestPath path, long requestId) {
             this.key = key;
             this.value = value;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
         }
 
@@ -378,7 +522,7 @@ public class Message {
             return requestId;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -409,14 +553,111 @@ public class Message {
     }
 
 
+    // ----------MULTI READ MESSAGES----------
+
+    // read of several keys in a single round trip
+    public static class StartMultiReadRequestMsg implements Protocol {
+        private final int[] keys;
+
+        public StartMultiReadRequestMsg(int[] keys) {
+            this.keys = keys;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+    }
+
+    // a cache forwards to its parent only the keys it does not have
+    public static class MultiReadRequestMsg implements RequestMsg {
+        private final int[] keys;
+        private final RequestPath path;
+        private final long requestId;
+
+        public MultiReadRequestMsg(int[] keys, RequestPath path, long requestId) {
+            this.keys = keys;
+            this.path = path;
+            this.requestId = requestId;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public RequestPath getPath() {
+            return path;
+        }
+
+        //get last element of the path
+        public ActorRef getLast() {
+            return path.peek();
+        }
+
+        //get path size
+        public int getPathSize() {
+            return path.size();
+        }
+    }
+
+    // values[i] is the value of keys[i], IntIntMap.MISSING if the key is not in the database
+    public static class MultiReadResponseMsg implements Protocol {
+        private final int[] keys;
+        private final int[] values;
+        private final RequestPath path;
+        private final long requestId;
+
+        public MultiReadResponseMsg(int[] keys, int[] values, RequestPath path, long requestId) {
+            this.keys = keys;
+            this.values = values;
+            this.path = path;
+            this.requestId = requestId;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public RequestPath getPath() {
+            return path;
+        }
+
+        //get path size
+        public int getPathSize() {
+            return path.size();
+        }
+    }
+
     // ----------WRITE MESSAGES----------
-    public static class StartWriteMsg implements Serializable{
+    public static class StartWriteMsg implements Protocol {
         private final int key;
         private final int value;
+        // time to live of the written key in the caches (seconds), 0 means the default ttl of each cache level
+        private final int ttl;
 
         public StartWriteMsg(int key, int value) {
+            this(key, value, 0);
+        }
+
+        public StartWriteMsg(int key, int value, int ttl) {
             this.key = key;
             this.value = value;
+            this.ttl = ttl;
+        }
+
+        public int getTtl() {
+            return this.ttl;
         }
 
         public int getKey() {
@@ -428,19 +669,28 @@ public class Message {
         }
     }
 
-    public static class WriteRequestMsg implements Serializable{
+    public static class WriteRequestMsg implements RequestMsg {
         private final int key;
         private final int value;
-        private Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
+        private final int ttl;
+
+        public WriteRequestMsg(int key, int value, RequestPath path, long requestId) {
+            this(key, value, path, requestId, 0);
+        }
 
-        public WriteRequestMsg(int key, int value, Stack<ActorRef> path, long requestId) {
+        public WriteRequestMsg(int key, int value, RequestPath path, long requestId, int ttl) {
             this.key = key;
             this.value = value;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
+            this.ttl = ttl;
+        }
+
+        public int getTtl() {
+            return ttl;
         }
 
         public long getRequestId() {
@@ -455,7 +705,7 @@ public class Message {
             return value;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -481,17 +731,27 @@ public class Message {
         }
     }
 
-    public static class WriteResponseMsg implements Serializable {
+    public static class WriteResponseMsg implements Protocol {
         private final int key;
         private final int value;
-        private Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
+        private final int ttl;
 
-        public WriteResponseMsg(int key, int value, Stack<ActorRef> path, long requestId) {
+        public WriteResponseMsg(int key, int value, RequestPath path, long requestId) {
+            this(key, value, path, requestId, 0);
+        }
+
+        public WriteResponseMsg(int key, int value, RequestPath path, long requestId, int ttl) {
             this.key = key;
             this.value = value;
             this.path = path;
             this.requestId = requestId;
+            this.ttl = ttl;
+        }
+
+        public int getTtl() {
+            return ttl;
         }
 
         public int getKey() {
@@ -506,7 +766,7 @@ public class Message {
             return requestId;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -526,13 +786,24 @@ public class Message {
         }
     }
 
-    public static class FillMsg implements Serializable{
+    public static class FillMsg implements Protocol {
         private final int key;
         private final int value;
 
+        private final int ttl;
+
         public FillMsg(int key, int value) {
+            this(key, value, 0);
+        }
+
+        public FillMsg(int key, int value, int ttl) {
             this.key = key;
             this.value = value;
+            this.ttl = ttl;
+        }
+
+        public int getTtl() {
+            return ttl;
         }
 
         public int getKey() {
@@ -545,8 +816,149 @@ public class Message {
     }
 
 
+    // ----------MULTI WRITE MESSAGES----------
+
+    // write of several keys in a single round trip, values[i] is the value of keys[i]
+    public static class StartMultiWriteMsg implements Protocol {
+        private final int[] keys;
+        private final int[] values;
+        // time to live of the written keys in the caches (seconds), 0 means the default ttl of each cache level
+        private final int ttl;
+
+        public StartMultiWriteMsg(int[] keys, int[] values, int ttl) {
+            this.keys = keys;
+            this.values = values;
+            this.ttl = ttl;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+    }
+
+    public static class MultiWriteRequestMsg implements RequestMsg {
+        private final int[] keys;
+        private final int[] values;
+        private final RequestPath path;
+        private final long requestId;
+        private final int ttl;
+
+        public MultiWriteRequestMsg(int[] keys, int[] values, RequestPath path, long requestId, int ttl) {
+            this.keys = keys;
+            this.values = values;
+            this.path = path;
+            this.requestId = requestId;
+            this.ttl = ttl;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+
+        public RequestPath getPath() {
+            return path;
+        }
+
+        //get last element of the path
+        public ActorRef getLast() {
+            return path.peek();
+        }
+
+        //get path size
+        public int getPathSize() {
+            return path.size();
+        }
+    }
+
+    // a single response for the whole batch, sent by the database along the path of the request
+    public static class MultiWriteResponseMsg implements Protocol {
+        private final int[] keys;
+        private final int[] values;
+        private final RequestPath path;
+        private final long requestId;
+        private final int ttl;
+
+        public MultiWriteResponseMsg(int[] keys, int[] values, RequestPath path, long requestId, int ttl) {
+            this.keys = keys;
+            this.values = values;
+            this.path = path;
+            this.requestId = requestId;
+            this.ttl = ttl;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+
+        public RequestPath getPath() {
+            return path;
+        }
+
+        //get path size
+        public int getPathSize() {
+            return path.size();
+        }
+    }
+
+    // FillMsg of a whole batch: each cache not on the path of the request gets one message, not one per key
+    public static class MultiFillMsg implements Protocol {
+        private final int[] keys;
+        private final int[] values;
+        private final int ttl;
+
+        public MultiFillMsg(int[] keys, int[] values, int ttl) {
+            this.keys = keys;
+            this.values = values;
+            this.ttl = ttl;
+        }
+
+        public int[] getKeys() {
+            return keys;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+    }
+
     // ----------CRITICAL READ MESSAGES----------
-    public static class StartCriticalReadRequestMsg implements Serializable {
+    public static class StartCriticalReadRequestMsg implements Protocol {
         private final int key;
 
         public StartCriticalReadRequestMsg(int key){
@@ -558,16 +970,15 @@ public class Message {
         }
     }
 
-    public static class CriticalReadRequestMsg implements Serializable {
+    public static class CriticalReadRequestMsg implements RequestMsg {
         private final int key;
-        private final Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
 
-        public CriticalReadRequestMsg(int key, Stack<ActorRef> path, long requestId) {
+        public CriticalReadRequestMsg(int key, RequestPath path, long requestId) {
             this.key = key;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
         }
 
@@ -579,7 +990,7 @@ public class Message {
             return key;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -606,18 +1017,17 @@ public class Message {
 
     }
 
-    public static class CriticalReadResponseMsg implements Serializable {
+    public static class CriticalReadResponseMsg implements Protocol {
         private final int key;
         private final int value;
-        private final Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
 
-        public CriticalReadResponseMsg(int key, int value, List<ActorRef> path, long requestId) {
+        public CriticalReadResponseMsg(int key, int value, RequestPath path, long requestId) {
             this.key = key;
             this.value = value;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
         }
 
@@ -633,7 +1043,7 @@ public class Message {
             return requestId;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -665,7 +1075,7 @@ public class Message {
 
 
     // ----------CRITICAL READ MESSAGES----------
-    public static class StartCriticalWriteRequestMsg implements Serializable {
+    public static class StartCriticalWriteRequestMsg implements Protocol {
         private final int key;
         private final int value;
 
@@ -683,18 +1093,17 @@ public class Message {
         }
     }
 
-    public static class CriticalWriteRequestMsg implements Serializable{
+    public static class CriticalWriteRequestMsg implements RequestMsg {
         private final int key;
         private final int value;
-        private Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
 
-        public CriticalWriteRequestMsg(int key, int value, Stack<ActorRef> path, long requestId) {
+        public CriticalWriteRequestMsg(int key, int value, RequestPath path, long requestId) {
             this.key = key;
             this.value = value;
-            //path should be unmodifiable, to follow the general akka rule
-            this.path = new Stack<>();
-            this.path.addAll(path);
+            // the path is immutable, so it is shared and not copied
+            this.path = path;
             this.requestId = requestId;
         }
 
@@ -710,7 +1119,7 @@ public class Message {
             return value;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -747,10 +1156,10 @@ public class Message {
         }
     }
 
-    public static class CriticalWriteResponseMsg implements Serializable {
+    public static class CriticalWriteResponseMsg implements Protocol {
         private final int key;
         private final int value;
-        private Stack<ActorRef> path;
+        private final RequestPath path;
         private final long requestId;
         private final boolean isRefused;
 
@@ -758,7 +1167,7 @@ public class Message {
         // so the client knows which caches have been updated
         private final Set<ActorRef> updatedCaches = new HashSet<>();
 
-        public CriticalWriteResponseMsg(int key, int value, Stack<ActorRef> path, long requestId, boolean isRefused) {
+        public CriticalWriteResponseMsg(int key, int value, RequestPath path, long requestId, boolean isRefused) {
             this.key = key;
             this.value = value;
             this.path = path;
@@ -782,7 +1191,7 @@ public class Message {
             return isRefused;
         }
 
-        public Stack<ActorRef> getPath() {
+        public RequestPath getPath() {
             return path;
         }
 
@@ -821,7 +1230,7 @@ public class Message {
         }
     }
 
-    public static class ProposedWriteMsg implements Serializable {
+    public static class ProposedWriteMsg implements Protocol {
         private final int key;
         private final int value;
         private final long requestId;
@@ -846,7 +1255,7 @@ public class Message {
 
     }
 
-    public static class AcceptedWriteMsg implements Serializable {
+    public static class AcceptedWriteMsg implements Protocol {
         private final int key;
         private final int value;
         private final long requestId;
@@ -887,7 +1296,7 @@ public class Message {
 
     }
 
-    public static class ApplyWriteMsg implements Serializable {
+    public static class ApplyWriteMsg implements Protocol {
         private final int key;
         private final int value;
         private final long requestId;
@@ -912,7 +1321,7 @@ public class Message {
 
     }
 
-    public static class ConfirmedWriteMsg implements Serializable {
+    public static class ConfirmedWriteMsg implements Protocol {
         private final int key;
         private final int value;
         private final long requestId;
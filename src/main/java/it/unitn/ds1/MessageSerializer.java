@@ -0,0 +1,483 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+
+import java.io.NotSerializableException;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// compact binary serializer of the classes in Message, bound to Message.Protocol in application.conf
+// the manifest is the simple name of the class, the payload is the list of its fields, sorted by name:
+// int and long as zigzag varints, boolean as a byte, String and ActorRef (its path) as length-prefixed utf-8,
+// int[], RequestPath, Map<Integer, Integer> and Set<Integer>/Set<ActorRef> as a length followed by the elements
+// lengths are stored plus one, so that 0 is a null value
+// the layout of each class is computed once from its fields, adding a field to a message needs no change here
+public class MessageSerializer extends SerializerWithStringManifest {
+
+    // any value not reserved by akka (0 - 40)
+    public static final int IDENTIFIER = 1701;
+
+    private final ExtendedActorSystem system;
+
+    private final Map<String, Schema> byManifest = new HashMap<>();
+    private final Map<Class<?>, Schema> byClass = new HashMap<>();
+
+    public MessageSerializer(ExtendedActorSystem system) {
+        this.system = system;
+        for (Class<?> cls : Message.class.getDeclaredClasses()) {
+            if (Message.Protocol.class.isAssignableFrom(cls) && !cls.isInterface()) {
+                Schema schema = new Schema(cls);
+                this.byManifest.put(cls.getSimpleName(), schema);
+                this.byClass.put(cls, schema);
+            }
+        }
+    }
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        return o.getClass().getSimpleName();
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        Schema schema = this.byClass.get(o.getClass());
+        if (schema == null) {
+            throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+        }
+        Writer writer = new Writer();
+        try {
+            for (Codec codec : schema.codecs) {
+                codec.write(writer, codec.field.get(o));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        Schema schema = this.byManifest.get(manifest);
+        if (schema == null) {
+            throw new NotSerializableException("Unknown manifest " + manifest);
+        }
+        Reader reader = new Reader(bytes);
+        try {
+            Object o = schema.newInstance();
+            for (Codec codec : schema.codecs) {
+                codec.field.set(o, codec.read(reader));
+            }
+            return o;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ----------SCHEMA----------
+
+    private final class Schema {
+        private final Constructor<?> constructor;
+        private final Object[] arguments;
+        private final Codec[] codecs;
+
+        Schema(Class<?> cls) {
+            // most messages have no default constructor: the constructor with the fewest parameters accepting
+            // default values (0, false, null) is used, and the fields are set right after the construction
+            Constructor<?>[] constructors = cls.getDeclaredConstructors();
+            Arrays.sort(constructors, Comparator.comparingInt(Constructor::getParameterCount));
+            Constructor<?> constructor = null;
+            Object[] arguments = null;
+            for (Constructor<?> candidate : constructors) {
+                Object[] defaults = new Object[candidate.getParameterCount()];
+                Class<?>[] types = candidate.getParameterTypes();
+                for (int i = 0; i < types.length; i++) {
+                    defaults[i] = defaultValue(types[i]);
+                }
+                try {
+                    candidate.setAccessible(true);
+                    candidate.newInstance(defaults);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    continue;
+                }
+                constructor = candidate;
+                arguments = defaults;
+                break;
+            }
+            if (constructor == null) {
+                throw new IllegalArgumentException("No constructor of " + cls.getSimpleName() + " accepts default values");
+            }
+            this.constructor = constructor;
+            this.arguments = arguments;
+
+            List<Codec> codecs = new ArrayList<>();
+            Field[] fields = cls.getDeclaredFields();
+            Arrays.sort(fields, Comparator.comparing(Field::getName));
+            for (Field field : fields) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                codecs.add(codecOf(field));
+            }
+            this.codecs = codecs.toArray(new Codec[0]);
+        }
+
+        Object newInstance() throws InstantiationException, IllegalAccessException, InvocationTargetException {
+            return this.constructor.newInstance(this.arguments);
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    private abstract static class Codec {
+        final Field field;
+
+        Codec(Field field) {
+            this.field = field;
+        }
+
+        abstract void write(Writer writer, Object value);
+
+        abstract Object read(Reader reader);
+    }
+
+    private Codec codecOf(Field field) {
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writer.writeInt((Integer) value); }
+                Object read(Reader reader) { return reader.readInt(); }
+            };
+        }
+        if (type == long.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writer.writeLong((Long) value); }
+                Object read(Reader reader) { return reader.readLong(); }
+            };
+        }
+        if (type == boolean.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writer.writeByte((Boolean) value ? 1 : 0); }
+                Object read(Reader reader) { return reader.readByte() != 0; }
+            };
+        }
+        if (type == String.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writer.writeString((String) value); }
+                Object read(Reader reader) { return reader.readString(); }
+            };
+        }
+        if (type == int[].class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writeIntArray(writer, (int[]) value); }
+                Object read(Reader reader) { return readIntArray(reader); }
+            };
+        }
+        if (type == ActorRef.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writeActorRef(writer, (ActorRef) value); }
+                Object read(Reader reader) { return readActorRef(reader); }
+            };
+        }
+        if (type == RequestPath.class) {
+            return new Codec(field) {
+                void write(Writer writer, Object value) { writePath(writer, (RequestPath) value); }
+                Object read(Reader reader) { return readPath(reader); }
+            };
+        }
+        if (type == Map.class && typeArguments(field).equals(List.of(Integer.class, Integer.class))) {
+            return new Codec(field) {
+                @SuppressWarnings("unchecked")
+                void write(Writer writer, Object value) { writeIntMap(writer, (Map<Integer, Integer>) value); }
+                Object read(Reader reader) { return readIntMap(reader); }
+            };
+        }
+        if (type == Set.class && typeArguments(field).equals(List.of(Integer.class))) {
+            return new Codec(field) {
+                @SuppressWarnings("unchecked")
+                void write(Writer writer, Object value) { writeIntSet(writer, (Set<Integer>) value); }
+                Object read(Reader reader) { return readIntSet(reader); }
+            };
+        }
+        if (type == Set.class && typeArguments(field).equals(List.of(ActorRef.class))) {
+            return new Codec(field) {
+                @SuppressWarnings("unchecked")
+                void write(Writer writer, Object value) { writeActorRefSet(writer, (Set<ActorRef>) value); }
+                Object read(Reader reader) { return readActorRefSet(reader); }
+            };
+        }
+        throw new IllegalArgumentException("Unsupported field " + field.getDeclaringClass().getSimpleName() + "." + field.getName() + " of type " + field.getGenericType());
+    }
+
+    private static List<Type> typeArguments(Field field) {
+        Type type = field.getGenericType();
+        return type instanceof ParameterizedType ? List.of(((ParameterizedType) type).getActualTypeArguments()) : List.of();
+    }
+
+    // ----------VALUES----------
+
+    private static void writeIntArray(Writer writer, int[] values) {
+        if (values == null) {
+            writer.writeLength(-1);
+            return;
+        }
+        writer.writeLength(values.length);
+        for (int value : values) {
+            writer.writeInt(value);
+        }
+    }
+
+    private static int[] readIntArray(Reader reader) {
+        int length = reader.readLength();
+        if (length < 0) {
+            return null;
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = reader.readInt();
+        }
+        return values;
+    }
+
+    private void writeActorRef(Writer writer, ActorRef actor) {
+        writer.writeString(actor == null ? null : Serialization.serializedActorPath(actor));
+    }
+
+    private ActorRef readActorRef(Reader reader) {
+        String path = reader.readString();
+        return path == null ? null : this.system.provider().resolveActorRef(path);
+    }
+
+    // from the client to the top, so that the path is rebuilt with push
+    private void writePath(Writer writer, RequestPath path) {
+        if (path == null) {
+            writer.writeLength(-1);
+            return;
+        }
+        writer.writeLength(path.size());
+        for (ActorRef actor : path) {
+            writeActorRef(writer, actor);
+        }
+    }
+
+    private RequestPath readPath(Reader reader) {
+        int length = reader.readLength();
+        if (length < 0) {
+            return null;
+        }
+        RequestPath path = RequestPath.EMPTY;
+        for (int i = 0; i < length; i++) {
+            path = path.push(readActorRef(reader));
+        }
+        return path;
+    }
+
+    private static void writeIntMap(Writer writer, Map<Integer, Integer> map) {
+        if (map == null) {
+            writer.writeLength(-1);
+            return;
+        }
+        writer.writeLength(map.size());
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            writer.writeInt(entry.getKey());
+            writer.writeInt(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, Integer> readIntMap(Reader reader) {
+        int length = reader.readLength();
+        if (length < 0) {
+            return null;
+        }
+        Map<Integer, Integer> map = new HashMap<>(length * 2);
+        for (int i = 0; i < length; i++) {
+            map.put(reader.readInt(), reader.readInt());
+        }
+        return map;
+    }
+
+    private static void writeIntSet(Writer writer, Set<Integer> set) {
+        if (set == null) {
+            writer.writeLength(-1);
+            return;
+        }
+        writer.writeLength(set.size());
+        for (int value : set) {
+            writer.writeInt(value);
+        }
+    }
+
+    private static Set<Integer> readIntSet(Reader reader) {
+        int length = reader.readLength();
+        if (length < 0) {
+            return null;
+        }
+        Set<Integer> set = new HashSet<>(length * 2);
+        for (int i = 0; i < length; i++) {
+            set.add(reader.readInt());
+        }
+        return set;
+    }
+
+    private void writeActorRefSet(Writer writer, Set<ActorRef> set) {
+        if (set == null) {
+            writer.writeLength(-1);
+            return;
+        }
+        writer.writeLength(set.size());
+        for (ActorRef actor : set) {
+            writeActorRef(writer, actor);
+        }
+    }
+
+    private Set<ActorRef> readActorRefSet(Reader reader) {
+        int length = reader.readLength();
+        if (length < 0) {
+            return null;
+        }
+        Set<ActorRef> set = new HashSet<>(length * 2);
+        for (int i = 0; i < length; i++) {
+            set.add(readActorRef(reader));
+        }
+        return set;
+    }
+
+    // ----------ENCODING----------
+
+    private static final class Writer {
+        private byte[] buffer = new byte[32];
+        private int size = 0;
+
+        void writeByte(int b) {
+            if (this.size == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+            }
+            this.buffer[this.size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        // zigzag, so that small negative values (e.g. -1) take few bytes
+        void writeInt(int value) {
+            writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void writeLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        // -1 (null) is stored as 0
+        void writeLength(int length) {
+            writeVarLong(length + 1L);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeLength(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeLength(bytes.length);
+            for (byte b : bytes) {
+                writeByte(b);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position = 0;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            if (this.position == this.buffer.length) {
+                throw new IllegalArgumentException("Truncated message");
+            }
+            return this.buffer[this.position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readInt() {
+            int value = (int) readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readLength() {
+            return (int) (readVarLong() - 1);
+        }
+
+        String readString() {
+            int length = readLength();
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package it.unitn.ds1;
+
+// keys that the database does not store (negative entries), so that reads of missing keys are answered by the cache
+// all the entries have the same ttl, therefore the insertion order is also the expiration order:
+// expired entries are dropped from the head, and when the cache is full the oldest entry is evicted (FIFO)
+public class NegativeCache {
+
+    private final int ttlMillis;
+    private final int capacity;
+
+    // key -> expiration time, in the clock of the owner cache (ms)
+    private final IntIntMap expirations = new IntIntMap();
+    private final IntLinkedSet order = new IntLinkedSet();
+
+    // ttl in seconds, a ttl or a capacity of 0 disables the negative cache
+    public NegativeCache(int ttl, int capacity) {
+        this.ttlMillis = ttl * 1000;
+        this.capacity = capacity;
+    }
+
+    public boolean isEnabled() {
+        return this.ttlMillis > 0 && this.capacity > 0;
+    }
+
+    public void add(int key, int now) {
+        if (!isEnabled()) {
+            return;
+        }
+        purgeExpired(now);
+
+        // a refreshed key goes back to the tail, to keep the expiration order
+        this.order.remove(key);
+        if (this.order.size() >= this.capacity) {
+            this.expirations.remove(this.order.pollFirst());
+        }
+        this.order.addLast(key);
+        int expiration = now + this.ttlMillis;
+        // after a wrap of the clock the sum can hit IntIntMap.MISSING, which marks an absent key
+        if (expiration == IntIntMap.MISSING) {
+            expiration++;
+        }
+        this.expirations.put(key, expiration);
+    }
+
+    public boolean contains(int key, int now) {
+        int expiration = this.expirations.get(key);
+        if (expiration == IntIntMap.MISSING) {
+            return false;
+        }
+        if (now - expiration >= 0) {
+            invalidate(key);
+            return false;
+        }
+        return true;
+    }
+
+    // the key has been written, it is no longer missing
+    public boolean invalidate(int key) {
+        if (this.expirations.remove(key) == IntIntMap.MISSING) {
+            return false;
+        }
+        this.order.remove(key);
+        return true;
+    }
+
+    public int size() {
+        return this.order.size();
+    }
+
+    public void clear() {
+        this.expirations.clear();
+        this.order.clear();
+    }
+
+    private void purgeExpired(int now) {
+        while (!this.order.isEmpty()) {
+            int oldest = this.order.first();
+            if (now - this.expirations.get(oldest) < 0) {
+                return;
+            }
+            this.order.pollFirst();
+            this.expirations.remove(oldest);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package it.unitn.ds1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// int-int store kept outside the java heap, in direct ByteBuffers
+// the store is split in segments chosen by the high bits of the hash, each segment is an open-addressing table
+// of fixed-width slots [key: int][value: int] with linear probing (same hashing and deletion as IntIntMap)
+// a segment grows by doubling up to its max size, then it is split in two segments by the next bit of the hash
+// (extendible hashing): the directory of segments doubles only when the split segment is referenced once
+// the garbage collector only sees the few ByteBuffer objects, so its pauses do not grow with the number of keys
+// direct memory is bounded by the -XX:MaxDirectMemorySize JVM option
+public class OffHeapIntIntStore implements IntIntStore {
+
+    private static final int SLOT_BYTES = 8;
+    private static final int VALUE_OFFSET = 4;
+
+    // key used to mark a free slot, the entry with this key (if any) is stored outside the segments
+    private static final int FREE_KEY = 0;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private static final int MIN_SEGMENT_SLOTS = 16;
+
+    // a ByteBuffer is indexed by int, a segment takes at most 2^26 slots (512MB)
+    private static final int MAX_SEGMENT_SLOTS = 1 << 26;
+
+    // MAX_SEGMENT_SLOTS, smaller in tests, so that the segments are split after a few keys
+    private final int maxSegmentSlots;
+
+    // directory indexed by the first depth bits of the hash, a segment of depth d is referenced by
+    // 2^(depth - d) consecutive entries
+    private Segment[] segments;
+    private int depth;
+    private int size = 0;
+
+    private boolean hasFreeKey = false;
+    private int freeKeyValue = MISSING;
+
+    public OffHeapIntIntStore() {
+        this(0);
+    }
+
+    // the slots for expectedSize keys are allocated up front, so that a bounded cache never rehashes
+    public OffHeapIntIntStore(int expectedSize) {
+        this(expectedSize, MAX_SEGMENT_SLOTS);
+    }
+
+    OffHeapIntIntStore(int expectedSize, int maxSegmentSlots) {
+        if (Integer.bitCount(maxSegmentSlots) != 1 || maxSegmentSlots < MIN_SEGMENT_SLOTS || maxSegmentSlots > MAX_SEGMENT_SLOTS) {
+            throw new IllegalArgumentException("Invalid max segment slots: " + maxSegmentSlots);
+        }
+        this.maxSegmentSlots = maxSegmentSlots;
+        long slots = Math.max(MIN_SEGMENT_SLOTS, (long) (expectedSize / LOAD_FACTOR));
+        int numSegments = 1;
+        while (slots > (long) numSegments * maxSegmentSlots) {
+            numSegments <<= 1;
+        }
+        int slotsPerSegment = (int) Math.max(MIN_SEGMENT_SLOTS, Long.highestOneBit((slots / numSegments) - 1) << 1);
+
+        this.segments = new Segment[numSegments];
+        this.depth = Integer.numberOfTrailingZeros(numSegments);
+        for (int i = 0; i < numSegments; i++) {
+            this.segments[i] = new Segment(Math.min(slotsPerSegment, maxSegmentSlots), this.depth);
+        }
+    }
+
+    @Override
+    public int get(int key) {
+        if (key == FREE_KEY) {
+            return this.hasFreeKey ? this.freeKeyValue : MISSING;
+        }
+        int hash = IntIntMap.hash(key);
+        return segmentOf(hash).get(key, hash);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return this.hasFreeKey;
+        }
+        int hash = IntIntMap.hash(key);
+        return segmentOf(hash).slotOf(key, hash) >= 0;
+    }
+
+    @Override
+    public int put(int key, int value) {
+        if (value == MISSING) {
+            throw new IllegalArgumentException("IntIntStore.MISSING can not be stored as a value");
+        }
+        if (key == FREE_KEY) {
+            int previous = this.hasFreeKey ? this.freeKeyValue : MISSING;
+            if (!this.hasFreeKey) {
+                this.size++;
+            }
+            this.hasFreeKey = true;
+            this.freeKeyValue = value;
+            return previous;
+        }
+        int hash = IntIntMap.hash(key);
+        Segment segment = segmentOf(hash);
+        int previous = segment.put(key, value, hash);
+        if (previous == MISSING) {
+            this.size++;
+            if (segment.isOverloaded()) {
+                split(segment);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public int remove(int key) {
+        if (key == FREE_KEY) {
+            if (!this.hasFreeKey) {
+                return MISSING;
+            }
+            this.hasFreeKey = false;
+            this.size--;
+            int previous = this.freeKeyValue;
+            this.freeKeyValue = MISSING;
+            return previous;
+        }
+        int hash = IntIntMap.hash(key);
+        int previous = segmentOf(hash).remove(key, hash);
+        if (previous != MISSING) {
+            this.size--;
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public void clear() {
+        forEachSegment(Segment::clear);
+        this.hasFreeKey = false;
+        this.freeKeyValue = MISSING;
+        this.size = 0;
+    }
+
+    @Override
+    public void forEach(IntIntConsumer consumer) {
+        if (this.hasFreeKey) {
+            consumer.accept(FREE_KEY, this.freeKeyValue);
+        }
+        forEachSegment(segment -> segment.forEach(consumer));
+    }
+
+    @Override
+    public int[] keys() {
+        int[] result = new int[this.size];
+        int[] i = {0};
+        forEach((key, value) -> result[i[0]++] = key);
+        return result;
+    }
+
+    @Override
+    public Map<Integer, Integer> toMap() {
+        Map<Integer, Integer> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    // bytes of direct memory currently reserved by the store
+    public long getReservedBytes() {
+        long[] bytes = {0};
+        forEachSegment(segment -> bytes[0] += (long) segment.slots() * SLOT_BYTES);
+        return bytes[0];
+    }
+
+    // number of distinct segments, grows with the splits
+    int segmentCount() {
+        int[] count = {0};
+        forEachSegment(segment -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private Segment segmentOf(int hash) {
+        // the long shift gives 0 when there is a single segment (shift of 32)
+        return this.segments[(int) ((hash & 0xffffffffL) >>> (32 - this.depth))];
+    }
+
+    // every segment once, in directory order
+    private void forEachSegment(Consumer<Segment> action) {
+        for (int i = 0; i < this.segments.length; i += 1 << (this.depth - this.segments[i].depth)) {
+            action.accept(this.segments[i]);
+        }
+    }
+
+    // the keys of a segment that can not grow anymore are moved to two segments, by the next bit of the hash
+    private void split(Segment segment) {
+        if (segment.depth == this.depth) {
+            Segment[] directory = new Segment[this.segments.length << 1];
+            for (int i = 0; i < directory.length; i++) {
+                directory[i] = this.segments[i >> 1];
+            }
+            this.segments = directory;
+            this.depth++;
+        }
+        int depth = segment.depth + 1;
+        int shift = 32 - depth;
+
+        int[] highKeys = {0};
+        segment.forEach((key, value) -> highKeys[0] += (IntIntMap.hash(key) >>> shift) & 1);
+        Segment low = new Segment(slotsFor(segment.size - highKeys[0]), depth);
+        Segment high = new Segment(slotsFor(highKeys[0]), depth);
+        segment.forEach((key, value) -> {
+            int hash = IntIntMap.hash(key);
+            (((hash >>> shift) & 1) == 0 ? low : high).put(key, value, hash);
+        });
+
+        for (int i = 0; i < this.segments.length; i++) {
+            if (this.segments[i] == segment) {
+                this.segments[i] = ((i >> (this.depth - depth)) & 1) == 0 ? low : high;
+            }
+        }
+    }
+
+    // slots of a segment holding keys within the load factor
+    private int slotsFor(int keys) {
+        return (int) Math.min(this.maxSegmentSlots, Math.max(MIN_SEGMENT_SLOTS, Long.highestOneBit((long) (keys / LOAD_FACTOR)) << 1));
+    }
+
+    // ----------SEGMENT LOGIC----------
+
+    private final class Segment {
+
+        // number of bits of the hash shared by the keys of the segment
+        private final int depth;
+
+        private ByteBuffer table;
+        private int mask;
+        private int threshold;
+        private int size = 0;
+
+        Segment(int slots, int depth) {
+            this.depth = depth;
+            allocate(slots);
+        }
+
+        // beyond the load factor at the max size, the segment must be split
+        // (unless all the bits of the hash are already used, then it is filled up to its last free slot)
+        boolean isOverloaded() {
+            return this.size > this.threshold && this.depth < Integer.SIZE;
+        }
+
+        int slots() {
+            return this.mask + 1;
+        }
+
+        int get(int key, int hash) {
+            int slot = slotOf(key, hash);
+            return slot < 0 ? MISSING : valueAt(slot);
+        }
+
+        int slotOf(int key, int hash) {
+            int slot = hash & this.mask;
+            int current;
+            while ((current = keyAt(slot)) != FREE_KEY) {
+                if (current == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        int put(int key, int value, int hash) {
+            int slot = hash & this.mask;
+            int current;
+            while ((current = keyAt(slot)) != FREE_KEY) {
+                if (current == key) {
+                    int previous = valueAt(slot);
+                    this.table.putInt(slot * SLOT_BYTES + VALUE_OFFSET, value);
+                    return previous;
+                }
+                slot = (slot + 1) & this.mask;
+            }
+            if (this.size >= this.mask) {
+                throw new IllegalStateException("Off-heap segment full (" + slots() + " slots)");
+            }
+            setSlot(slot, key, value);
+            if (++this.size > this.threshold && slots() < maxSegmentSlots) {
+                rehash();
+            }
+            return MISSING;
+        }
+
+        int remove(int key, int hash) {
+            int slot = slotOf(key, hash);
+            if (slot < 0) {
+                return MISSING;
+            }
+            int previous = valueAt(slot);
+            shiftKeys(slot);
+            this.size--;
+            return previous;
+        }
+
+        void clear() {
+            for (int slot = 0; slot <= this.mask; slot++) {
+                this.table.putInt(slot * SLOT_BYTES, FREE_KEY);
+            }
+            this.size = 0;
+        }
+
+        void forEach(IntIntConsumer consumer) {
+            for (int slot = 0; slot <= this.mask; slot++) {
+                int key = keyAt(slot);
+                if (key != FREE_KEY) {
+                    consumer.accept(key, valueAt(slot));
+                }
+            }
+        }
+
+        private int keyAt(int slot) {
+            return this.table.getInt(slot * SLOT_BYTES);
+        }
+
+        private int valueAt(int slot) {
+            return this.table.getInt(slot * SLOT_BYTES + VALUE_OFFSET);
+        }
+
+        private void setSlot(int slot, int key, int value) {
+            this.table.putInt(slot * SLOT_BYTES, key);
+            this.table.putInt(slot * SLOT_BYTES + VALUE_OFFSET, value);
+        }
+
+        // backward shift deletion, see IntIntMap
+        private void shiftKeys(int slot) {
+            int last;
+            while (true) {
+                last = slot;
+                slot = (slot + 1) & this.mask;
+                while (true) {
+                    int key = keyAt(slot);
+                    if (key == FREE_KEY) {
+                        this.table.putInt(last * SLOT_BYTES, FREE_KEY);
+                        return;
+                    }
+                    int ideal = IntIntMap.hash(key) & this.mask;
+                    if (last <= slot ? (last >= ideal || ideal > slot) : (last >= ideal && ideal > slot)) {
+                        break;
+                    }
+                    slot = (slot + 1) & this.mask;
+                }
+                setSlot(last, keyAt(slot), valueAt(slot));
+            }
+        }
+
+        private void allocate(int slots) {
+            // direct buffers are zeroed, i.e. every slot starts free
+            this.table = ByteBuffer.allocateDirect(slots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+            this.mask = slots - 1;
+            this.threshold = (int) (slots * LOAD_FACTOR);
+        }
+
+        private void rehash() {
+            ByteBuffer oldTable = this.table;
+            int oldSlots = slots();
+            allocate(Math.min(oldSlots << 1, maxSegmentSlots));
+            this.size = 0;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int key = oldTable.getInt(slot * SLOT_BYTES);
+                if (key != FREE_KEY) {
+                    put(key, oldTable.getInt(slot * SLOT_BYTES + VALUE_OFFSET), IntIntMap.hash(key));
+                }
+            }
+        }
+    }
+}
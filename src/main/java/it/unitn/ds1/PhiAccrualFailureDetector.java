@@ -0,0 +1,97 @@
+package it.unitn.ds1;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// phi accrual failure detector (Hayashibara et al.), the same model used by akka cluster
+// the intervals between heartbeats are assumed normally distributed, phi is the suspicion that the monitored
+// actor crashed given the time elapsed since the last heartbeat: phi = -log10(probability that a heartbeat
+// arrives even later), so phi 1 means 10% of error, phi 2 1%, phi 3 0.1% and so on
+// all the times are in milliseconds
+public class PhiAccrualFailureDetector {
+
+    // last intervals between heartbeats
+    private static final int MAX_SAMPLE_SIZE = 200;
+
+    private final double threshold;
+    private final long acceptableHeartbeatPause;
+    private final double minStdDeviation;
+    private final long firstHeartbeatEstimate;
+
+    private final Deque<Long> intervals = new ArrayDeque<>();
+    private double intervalSum;
+    private double squaredIntervalSum;
+
+    private long lastHeartbeat;
+
+    public PhiAccrualFailureDetector(double threshold, long firstHeartbeatEstimate, long acceptableHeartbeatPause, double minStdDeviation) {
+        if (threshold <= 0 || firstHeartbeatEstimate <= 0 || acceptableHeartbeatPause < 0 || minStdDeviation <= 0) {
+            throw new IllegalArgumentException("Invalid failure detector parameters");
+        }
+        this.threshold = threshold;
+        this.firstHeartbeatEstimate = firstHeartbeatEstimate;
+        this.acceptableHeartbeatPause = acceptableHeartbeatPause;
+        this.minStdDeviation = minStdDeviation;
+        reset(now());
+    }
+
+    // milliseconds from a monotonic clock
+    public static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    // starts monitoring a (new) actor at time now, as if a heartbeat had just arrived:
+    // an actor that never answers is suspected too
+    // the history starts from the expected interval, so that the first heartbeats are not suspected
+    public void reset(long now) {
+        this.intervals.clear();
+        this.intervalSum = 0;
+        this.squaredIntervalSum = 0;
+        long stdDeviation = this.firstHeartbeatEstimate / 4;
+        addInterval(this.firstHeartbeatEstimate - stdDeviation);
+        addInterval(this.firstHeartbeatEstimate + stdDeviation);
+        this.lastHeartbeat = now;
+    }
+
+    // the monitoring was interrupted (e.g. the monitoring actor was busy and checked late): the time elapsed
+    // since the last heartbeat says nothing about the monitored actor, phi is computed from now on
+    // the history of the intervals is kept
+    public void resume(long now) {
+        this.lastHeartbeat = Math.max(this.lastHeartbeat, now);
+    }
+
+    public void heartbeat(long now) {
+        addInterval(Math.max(0, now - this.lastHeartbeat));
+        this.lastHeartbeat = now;
+    }
+
+    public double phi(long now) {
+        double mean = this.intervalSum / this.intervals.size() + this.acceptableHeartbeatPause;
+        double variance = this.squaredIntervalSum / this.intervals.size() - Math.pow(this.intervalSum / this.intervals.size(), 2);
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), this.minStdDeviation);
+
+        // logistic approximation of the cumulative distribution function of the normal distribution
+        long elapsed = now - this.lastHeartbeat;
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    public boolean isAvailable(long now) {
+        return phi(now) < this.threshold;
+    }
+
+    private void addInterval(long interval) {
+        if (this.intervals.size() == MAX_SAMPLE_SIZE) {
+            long oldest = this.intervals.removeFirst();
+            this.intervalSum -= oldest;
+            this.squaredIntervalSum -= (double) oldest * oldest;
+        }
+        this.intervals.addLast(interval);
+        this.intervalSum += interval;
+        this.squaredIntervalSum += (double) interval * interval;
+    }
+}
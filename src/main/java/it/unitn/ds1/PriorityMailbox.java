@@ -0,0 +1,262 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.dispatch.*;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import it.unitn.ds1.Message.*;
+import scala.Option;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// mailbox with three priority classes, each one a FIFO queue, served in order:
+// ADMIN (crash, recover, state), PROTOCOL (everything a parent sends to its children: responses, fills,
+// critical write and recovery messages, plus init, connection and health check messages) and
+// CLIENT (the read and write requests coming from below, timers and any other message)
+// since a parent only sends PROTOCOL messages, the messages coming from the parent keep their order
+// timers stay in the CLIENT class: a response already in the mailbox cancels its timeout before it is handled
+// heartbeats are PROTOCOL messages, so that a parent busy with requests is not suspected of being crashed
+// the heartbeat tick is sent by the scheduler, not by a timer: timers wrap their message, which would be CLIENT
+// enabled per level with mailbox: priority in config.yaml, with mailbox: default the messages are served in fifo order
+// with mailboxCapacity > 0 the mailbox is bounded: a request (RequestMsg) arriving when capacity messages of the
+// CLIENT class are already waiting is shed, and the sender receives an OverloadedResponseMsg instead of the response
+// the requests taken out of the mailbox by LatencyInjector, waiting for their simulated delay, are still waiting
+// for the actor: they count toward the capacity too
+// protocol and admin messages are never shed, they are bounded by the requests already admitted
+public class PriorityMailbox implements MailboxType, ProducesMessageQueue<PriorityMailbox.PriorityMessageQueue> {
+
+    public static final int ADMIN = 0;
+    public static final int PROTOCOL = 1;
+    public static final int CLIENT = 2;
+    private static final String[] CLASS_NAMES = {"admin", "protocol", "client"};
+
+    // a message that knows its own class (e.g. the delivery of a message delayed by LatencyInjector)
+    public interface Prioritized {
+        int priority();
+    }
+
+    private static final Map<Class<?>, Integer> PRIORITIES = new HashMap<>();
+
+    static {
+        for (Class<?> cls : List.of(CrashMsg.class, RecoverMsg.class, InfoMsg.class, InfoItemsMsg.class,
+                CurrentDataMsg.class, DropDatabaseMsg.class, StartHealthCheck.class, StartInitMsg.class,
+                ClientOperationsListMsg.class)) {
+            PRIORITIES.put(cls, ADMIN);
+        }
+        for (Class<?> cls : List.of(InitMsg.class, RequestConnectionMsg.class, ResponseConnectionMsg.class,
+                RequestDisconnectionMsg.class, ParentRecoveredMsg.class,
+                TimeoutElapsedMsg.class, HealthCheckRequestMsg.class, HealthCheckResponseMsg.class,
+                ReadResponseMsg.class, MultiReadResponseMsg.class, WriteResponseMsg.class, MultiWriteResponseMsg.class,
+                FillMsg.class, MultiFillMsg.class, CriticalReadResponseMsg.class, CriticalWriteResponseMsg.class,
+                ProposedWriteMsg.class, AcceptedWriteMsg.class, ApplyWriteMsg.class, ConfirmedWriteMsg.class,
+                DropTmpWriteDataMsg.class, RequestDataRecoverMsg.class, ResponseDataRecoverMsg.class,
+                RequestUpdatedDataMsg.class, ResponseUpdatedDataMsg.class, UpdateDataMsg.class,
+                OverloadedResponseMsg.class, HeartbeatTickMsg.class, HeartbeatMsg.class, HeartbeatAckMsg.class,
+                LoadRequestMsg.class, LoadResponseMsg.class)) {
+            PRIORITIES.put(cls, PROTOCOL);
+        }
+    }
+
+    public static int priorityOf(Object message) {
+        if (message instanceof Prioritized) {
+            return ((Prioritized) message).priority();
+        }
+        return PRIORITIES.getOrDefault(message.getClass(), CLIENT);
+    }
+
+    // configuration of the mailbox id: default (fifo) or priority, bounded when capacity > 0
+    // the mailboxes of each level are added to the configuration of the actor system (see DistributedCacheSystem)
+    public static Config config(String id, String mailbox, int capacity) {
+        if (mailbox == null) {
+            mailbox = "default";
+        }
+        if (!mailbox.equals("default") && !mailbox.equals("priority")) {
+            throw new IllegalArgumentException("Unknown mailbox: " + mailbox);
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative mailbox capacity: " + capacity);
+        }
+        Map<String, Object> values = new HashMap<>();
+        values.put(id + ".mailbox-type", PriorityMailbox.class.getName());
+        values.put(id + ".prioritized", mailbox.equals("priority"));
+        values.put(id + ".capacity", capacity);
+        return ConfigFactory.parseMap(values);
+    }
+
+    // props of an actor using the mailbox id, the plain unbounded fifo mailbox of akka is kept when possible
+    public static Props withMailbox(Props props, String id, String mailbox, int capacity) {
+        if ((mailbox == null || mailbox.equals("default")) && capacity == 0) {
+            return props;
+        }
+        return props.withMailbox(id);
+    }
+
+    // ----------METRICS----------
+
+    // queues of the living actors using this mailbox
+    private static final Map<ActorRef, PriorityMessageQueue> QUEUES = new ConcurrentHashMap<>();
+
+    // mailbox depth of actor per class, e.g. "admin 0 (max 1), protocol 3 (max 40), client 812 (max 1000), shed 95"
+    // null if the actor does not use this mailbox
+    public static String describe(ActorRef actor) {
+        PriorityMessageQueue queue = QUEUES.get(actor);
+        return queue == null ? null : queue.toString();
+    }
+
+    // true if actor uses this mailbox with priorities
+    public static boolean isPrioritized(ActorRef actor) {
+        PriorityMessageQueue queue = QUEUES.get(actor);
+        return queue != null && queue.prioritized;
+    }
+
+    // requests of actor (RequestMsg) taken out of its mailbox and held by LatencyInjector: +1 when held, -1 when
+    // handled, see PriorityMessageQueue.capacity
+    public static void held(ActorRef actor, int requests) {
+        PriorityMessageQueue queue = QUEUES.get(actor);
+        if (queue != null) {
+            queue.held.addAndGet(requests);
+        }
+    }
+
+    // ----------MAILBOX----------
+
+    private final boolean prioritized;
+    private final int capacity;
+
+    public PriorityMailbox(ActorSystem.Settings settings, Config config) {
+        this.prioritized = !config.hasPath("prioritized") || config.getBoolean("prioritized");
+        this.capacity = config.hasPath("capacity") ? config.getInt("capacity") : 0;
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        PriorityMessageQueue queue = new PriorityMessageQueue(this.prioritized, this.capacity);
+        if (owner.isDefined()) {
+            queue.owner = owner.get();
+            QUEUES.put(queue.owner, queue);
+        }
+        return queue;
+    }
+
+    public static class PriorityMessageQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+        private final List<Queue<Envelope>> queues = List.of(
+                new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>());
+
+        private final AtomicInteger[] depths = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+        private final AtomicInteger[] maxDepths = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+
+        // without priorities every message goes in the CLIENT queue
+        private final boolean prioritized;
+        // max number of messages of the CLIENT class waiting when a request is admitted, 0 means unbounded
+        // the requests held by LatencyInjector are waiting too
+        private final int capacity;
+        private final AtomicInteger held = new AtomicInteger();
+        private final AtomicLong shed = new AtomicLong();
+
+        private ActorRef owner = null;
+
+        public PriorityMessageQueue(boolean prioritized, int capacity) {
+            this.prioritized = prioritized;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            int priority = this.prioritized ? priorityOf(handle.message()) : CLIENT;
+            // the counter is increased first, so that it is never negative
+            // and concurrent senders never admit more than capacity requests
+            int depth = this.depths[priority].incrementAndGet();
+            if (this.capacity > 0 && depth + this.held.get() > this.capacity && handle.message() instanceof RequestMsg) {
+                this.depths[priority].decrementAndGet();
+                shed(receiver, handle);
+                return;
+            }
+            this.maxDepths[priority].accumulateAndGet(depth, Math::max);
+            this.queues.get(priority).add(handle);
+        }
+
+        // the request is dropped, the sender is told to back off (from the receiver, as a normal response)
+        private void shed(ActorRef receiver, Envelope handle) {
+            this.shed.incrementAndGet();
+            RequestMsg request = (RequestMsg) handle.message();
+            if (handle.sender() != null) {
+                handle.sender().tell(new OverloadedResponseMsg(request.getPath(), request.getRequestId()), receiver);
+            }
+        }
+
+        @Override
+        public Envelope dequeue() {
+            for (int priority = ADMIN; priority <= CLIENT; priority++) {
+                Envelope envelope = this.queues.get(priority).poll();
+                if (envelope != null) {
+                    this.depths[priority].decrementAndGet();
+                    return envelope;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return this.depths[ADMIN].get() + this.depths[PROTOCOL].get() + this.depths[CLIENT].get();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return numberOfMessages() > 0;
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            if (this.owner != null) {
+                QUEUES.remove(this.owner);
+            }
+            Envelope envelope;
+            while ((envelope = dequeue()) != null) {
+                deadLetters.enqueue(owner, envelope);
+            }
+        }
+
+        public int depth(int priority) {
+            return this.depths[priority].get();
+        }
+
+        public int maxDepth(int priority) {
+            return this.maxDepths[priority].get();
+        }
+
+        public long shed() {
+            return this.shed.get();
+        }
+
+        public int held() {
+            return this.held.get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int priority = ADMIN; priority <= CLIENT; priority++) {
+                if (priority > ADMIN) {
+                    sb.append(", ");
+                }
+                sb.append(CLASS_NAMES[priority]).append(' ').append(depth(priority))
+                        .append(" (max ").append(maxDepth(priority)).append(')');
+            }
+            if (this.held.get() > 0) {
+                sb.append(", delayed ").append(held());
+            }
+            if (this.capacity > 0) {
+                sb.append(", shed ").append(shed());
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package it.unitn.ds1;
+
+// collision-free 64-bit request ids, snowflake layout (from the most significant bit):
+// 1 bit always 0 (ids are positive), 39 bits milliseconds since EPOCH (about 17 years),
+// 2 bits reserved (always 0), 10 bits id of the client, 12 bits sequence within the millisecond
+// ids of the same generator are strictly increasing, ids of different clients never collide
+// since the client id is part of the id, so every client keeps its own generator without coordination
+// (caches and database only forward the ids of the clients)
+public class RequestIdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH = 1704067200000L;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final int RESERVED_BITS = 2;
+    private static final int TIMESTAMP_BITS = 39;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << TIMESTAMP_BITS) - 1;
+
+    private final long prefix; // node id, already shifted
+
+    private long lastTimestamp = -1;
+    private long sequence = 0;
+
+    public RequestIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id out of range [0, " + MAX_NODE_ID + "]: " + nodeId);
+        }
+        this.prefix = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    // never blocks: when the sequence of the current millisecond is exhausted, or the clock goes back,
+    // the generator keeps counting on its own timestamp, which the clock later catches up with
+    public long next() {
+        long now = System.currentTimeMillis() - EPOCH;
+        if (now > this.lastTimestamp) {
+            this.lastTimestamp = now;
+            this.sequence = 0;
+        } else if (this.sequence < MAX_SEQUENCE) {
+            this.sequence++;
+        } else {
+            this.lastTimestamp++;
+            this.sequence = 0;
+        }
+        if (this.lastTimestamp > MAX_TIMESTAMP) {
+            throw new IllegalStateException("Request id timestamp overflow");
+        }
+        return (this.lastTimestamp << (RESERVED_BITS + NODE_BITS + SEQUENCE_BITS)) | this.prefix | this.sequence;
+    }
+}
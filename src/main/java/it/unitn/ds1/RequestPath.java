@@ -0,0 +1,100 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// route followed by a request, from the client (first) to the last actor that forwarded it (top)
+// immutable persistent list: push and pop share the rest of the path with the original one,
+// so a hop never copies the path and a message can hold it without defensive copies
+// push allocates a single cell, pop and peek allocate nothing
+public final class RequestPath implements Iterable<ActorRef>, Serializable {
+
+    public static final RequestPath EMPTY = new RequestPath(null, null, 0);
+
+    private final ActorRef top;
+    private final RequestPath rest;
+    private final int size;
+
+    private RequestPath(ActorRef top, RequestPath rest, int size) {
+        this.top = top;
+        this.rest = rest;
+        this.size = size;
+    }
+
+    public static RequestPath of(ActorRef origin) {
+        return EMPTY.push(origin);
+    }
+
+    // path with actor added on top
+    public RequestPath push(ActorRef actor) {
+        return new RequestPath(actor, this, this.size + 1);
+    }
+
+    // path without the top actor
+    public RequestPath pop() {
+        if (this.size == 0) {
+            throw new IllegalStateException("Empty request path");
+        }
+        return this.rest;
+    }
+
+    // last actor added, null if the path is empty
+    public ActorRef peek() {
+        return this.top;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    // from the client to the top, the same order of the old Stack path
+    @Override
+    public Iterator<ActorRef> iterator() {
+        ActorRef[] actors = new ActorRef[this.size];
+        RequestPath node = this;
+        for (int i = this.size - 1; i >= 0; i--) {
+            actors[i] = node.top;
+            node = node.rest;
+        }
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < actors.length;
+            }
+
+            @Override
+            public ActorRef next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return actors[this.next++];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (ActorRef actor : this) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(actor);
+        }
+        return sb.append("]").toString();
+    }
+
+    // the empty path is a singleton also after deserialization
+    private Object readResolve() {
+        return this.size == 0 ? EMPTY : this;
+    }
+}
@@ -0,0 +1,215 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+
+import java.util.*;
+
+// requests handled by a cache and not yet answered
+// a request is removed as soon as its response is sent, and requests older than maxAge are dropped as stale
+// (e.g. the response was lost), so the table only holds in-flight work
+// requests forwarded upstream are also indexed by the parent they were sent to, so that on failover
+// only the requests pending on the failed parent are retried
+public class RequestTable {
+
+    public static class Request {
+
+        private final long requestId;
+        private final int key;
+        private int value;
+        private int ttl = 0; // only for write requests
+        private final String type;
+        private final String requesterType;
+        private ActorRef requester; //either a client or a cache
+        private final long createdAt = System.currentTimeMillis();
+        private ActorRef upstream = null; // parent the request has been forwarded to, if any
+        private RequestPath path = RequestPath.EMPTY; // path of the received request, empty with hop-local routing
+        private LinkedHashMap<Integer, Integer> values = null; // only for multi read requests, key -> value (null if asked to the parent)
+
+        public Request(String type, String requesterType, ActorRef requester, int key, long requestId) {
+            this.type = type;
+            this.requesterType = requesterType;
+            this.requester = requester;
+            this.key = key;
+            this.value = IntIntMap.MISSING; // no value is set for the read requests
+            this.requestId = requestId;
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+
+        int getKey() {
+            return key;
+        }
+
+        int getValue() {
+            return value;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        String getRequesterType() {
+            return requesterType;
+        }
+
+        ActorRef getRequester() {
+            return requester;
+        }
+
+        ActorRef getUpstream() {
+            return upstream;
+        }
+
+        void setValue (int value) {
+            this.value = value;
+        }
+
+        RequestPath getPath() {
+            return path;
+        }
+
+        void setPath (RequestPath path) {
+            this.path = path;
+        }
+
+        LinkedHashMap<Integer, Integer> getValues() {
+            return values;
+        }
+
+        void setValues (LinkedHashMap<Integer, Integer> values) {
+            this.values = values;
+        }
+
+        int getTtl() {
+            return ttl;
+        }
+
+        void setTtl (int ttl) {
+            this.ttl = ttl;
+        }
+
+        //toString method for debugging
+        @Override
+        public String toString() {
+            return "Request{" +
+                    "requestId=" + requestId +
+                    ", key=" + key +
+                    ", value=" + value +
+                    ", type='" + type + '\'' +
+                    ", requesterType='" + requesterType + '\'' +
+                    ", requester=" + requester +
+                    '}';
+        }
+    }
+
+    // insertion order is also age order, stale requests are at the head
+    private final LinkedHashMap<Long, Request> requests = new LinkedHashMap<>();
+
+    // parent -> ids of the requests forwarded to it and not yet answered
+    private final Map<ActorRef, Set<Long>> pendingByParent = new HashMap<>();
+
+    private final long maxAgeMillis;
+
+    // maxAge in seconds
+    public RequestTable(int maxAge) {
+        this.maxAgeMillis = maxAge * 1000L;
+    }
+
+    // returns the stale requests dropped to make the table consistent, if any
+    public List<Request> put(Request request) {
+        List<Request> stale = purgeStale();
+        // a retry with the same id replaces the old entry and goes back to the tail
+        Request previous = this.requests.remove(request.getRequestId());
+        if (previous != null) {
+            unindex(previous);
+        }
+        this.requests.put(request.getRequestId(), request);
+        return stale;
+    }
+
+    public Request get(long requestId) {
+        return this.requests.get(requestId);
+    }
+
+    public boolean contains(long requestId) {
+        return this.requests.containsKey(requestId);
+    }
+
+    // the request has been sent (or sent again) to parent
+    public void forwarded(long requestId, ActorRef parent) {
+        Request request = this.requests.get(requestId);
+        if (request == null) {
+            return;
+        }
+        unindex(request);
+        request.upstream = parent;
+        this.pendingByParent.computeIfAbsent(parent, p -> new LinkedHashSet<>()).add(requestId);
+    }
+
+    // the response has been sent, returns the removed request or null if it was not present
+    public Request complete(long requestId) {
+        Request request = this.requests.remove(requestId);
+        if (request != null) {
+            unindex(request);
+        }
+        return request;
+    }
+
+    // requests forwarded to parent and not yet answered, in arrival order
+    public List<Request> pendingOn(ActorRef parent) {
+        List<Request> pending = new ArrayList<>();
+        for (long requestId : this.pendingByParent.getOrDefault(parent, Collections.emptySet())) {
+            pending.add(this.requests.get(requestId));
+        }
+        return pending;
+    }
+
+    public int size() {
+        return this.requests.size();
+    }
+
+    public void clear() {
+        this.requests.clear();
+        this.pendingByParent.clear();
+    }
+
+    @Override
+    public String toString() {
+        return this.requests.values().toString();
+    }
+
+    private List<Request> purgeStale() {
+        List<Request> stale = Collections.emptyList();
+        long now = System.currentTimeMillis();
+        Iterator<Request> iterator = this.requests.values().iterator();
+        while (iterator.hasNext()) {
+            Request oldest = iterator.next();
+            if (now - oldest.createdAt < this.maxAgeMillis) {
+                break;
+            }
+            iterator.remove();
+            unindex(oldest);
+            if (stale.isEmpty()) {
+                stale = new ArrayList<>();
+            }
+            stale.add(oldest);
+        }
+        return stale;
+    }
+
+    private void unindex(Request request) {
+        if (request.upstream == null) {
+            return;
+        }
+        Set<Long> pending = this.pendingByParent.get(request.upstream);
+        if (pending != null) {
+            pending.remove(request.getRequestId());
+            if (pending.isEmpty()) {
+                this.pendingByParent.remove(request.upstream);
+            }
+        }
+        request.upstream = null;
+    }
+}
@@ -2,7 +2,10 @@ package it.unitn.ds1;
 
 public class TimeoutConfiguration {
     private String type;
-    private int value;
+    private int value; // seconds
+
+    // with a value > 0 the timeout adapts to the measured latency between minMillis and value, see LatencyEstimator
+    private int minMillis = 0;
 
     public String getType() {
         return type;
@@ -20,10 +23,23 @@ public class TimeoutConfiguration {
         this.value = value;
     }
 
+    public int getMinMillis() {
+        return minMillis;
+    }
+
+    public void setMinMillis(int minMillis) {
+        this.minMillis = minMillis;
+    }
+
     public TimeoutConfiguration(){}
 
     public TimeoutConfiguration(String type, int value){
         this.type = type;
         this.value = value;
     }
+
+    public TimeoutConfiguration(String type, int value, int minMillis){
+        this(type, value);
+        this.minMillis = minMillis;
+    }
 }
@@ -0,0 +1,68 @@
+package it.unitn.ds1;
+
+// W-TinyLFU admission filter
+// new keys are first stored in a small LRU window, when the window is full its oldest key becomes a candidate
+// for the main area of the cache, and it is admitted only if it has been requested more often than the key
+// the eviction policy would throw away; this way a scan over cold keys cannot wipe out the hot set
+public class TinyLfuAdmission {
+
+    // percentage of the cache capacity reserved to the window
+    private static final int WINDOW_PERCENT = 1;
+
+    private final FrequencySketch sketch;
+
+    // access-ordered window of recently inserted keys
+    private final IntLinkedSet window = new IntLinkedSet();
+    private final int windowCapacity;
+
+    public TinyLfuAdmission(int capacity) {
+        this.sketch = new FrequencySketch(capacity);
+        this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENT / 100);
+    }
+
+    public int getWindowCapacity() {
+        return this.windowCapacity;
+    }
+
+    // to be called for every request of a key, both hits and misses
+    public void recordAccess(int key) {
+        this.sketch.increment(key);
+    }
+
+    // true if the candidate is more popular than the victim
+    public boolean admit(int candidate, int victim) {
+        return this.sketch.frequency(candidate) > this.sketch.frequency(victim);
+    }
+
+    // ----------WINDOW LOGIC----------
+
+    public boolean isInWindow(int key) {
+        return this.window.contains(key);
+    }
+
+    public void addToWindow(int key) {
+        this.window.addLast(key);
+    }
+
+    public void onWindowAccess(int key) {
+        this.window.moveToLast(key);
+    }
+
+    public boolean removeFromWindow(int key) {
+        return this.window.remove(key);
+    }
+
+    public boolean isWindowOverflowing() {
+        return this.window.size() > this.windowCapacity;
+    }
+
+    // removes and returns the least recently used key of the window
+    public int pollWindow() {
+        return this.window.pollFirst();
+    }
+
+    public void clear() {
+        this.window.clear();
+        this.sketch.clear();
+    }
+}
@@ -0,0 +1,135 @@
+package it.unitn.ds1;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActor;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import it.unitn.ds1.Message.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// a L2 cache monitoring its L1 parent (a probe) with heartbeats
+// the cache runs on a dispatcher with a single thread, so that a blocker actor on the same dispatcher
+// can keep it busy, as a backlog of requests would: its heartbeat ticks are handled late
+// with latencies, a real L1 parent with a backlog of requests of the L2 cache answers the heartbeats first
+public class HeartbeatTest {
+
+    private static final int HEARTBEAT_INTERVAL = 50;
+    private static final int LATENCY = 20;
+    private static final int REQUESTS = 10000;
+
+    private ActorSystem system;
+
+    // keeps the thread of the dispatcher busy for the given milliseconds
+    private static class Blocker extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(Long.class, millis -> Thread.sleep(millis))
+                    .build();
+        }
+    }
+
+    @Before
+    public void setup() {
+        system = ActorSystem.create("HeartbeatTest", ConfigFactory.parseString(
+                "single-thread {\n"
+                        + "  type = Dispatcher\n"
+                        + "  executor = thread-pool-executor\n"
+                        + "  thread-pool-executor.fixed-pool-size = 1\n"
+                        + "  throughput = 1\n"
+                        + "}")
+                .withFallback(PriorityMailbox.config(Cache.mailboxId("L1"), "priority", 0))
+                .withFallback(PriorityMailbox.config(Cache.mailboxId("L2"), "priority", 0))
+                .withFallback(ConfigFactory.load()));
+    }
+
+    @After
+    public void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    private ActorRef l2Cache(TestKit parent, TestKit database) {
+        CacheConfiguration configuration = new CacheConfiguration(1, new ArrayList<>());
+        configuration.setHeartbeatInterval(HEARTBEAT_INTERVAL);
+        return system.actorOf(Cache.props(1, "L2", parent.getRef(), database.getRef(), Set.of(parent.getRef()),
+                configuration, new ArrayList<>()).withDispatcher("single-thread"));
+    }
+
+    // the parent answers every heartbeat right away
+    private static void ackHeartbeats(TestKit parent) {
+        parent.setAutoPilot(new TestActor.AutoPilot() {
+            @Override
+            public TestActor.AutoPilot run(ActorRef sender, Object msg) {
+                if (msg instanceof HeartbeatMsg) {
+                    sender.tell(new HeartbeatAckMsg(), parent.getRef());
+                }
+                return keepRunning();
+            }
+        });
+    }
+
+    @Test
+    public void lateTickDoesNotSuspectHealthyParent() {
+        TestKit parent = new TestKit(system);
+        TestKit database = new TestKit(system);
+        ackHeartbeats(parent);
+        ActorRef blocker = system.actorOf(Props.create(Blocker.class).withDispatcher("single-thread"));
+        l2Cache(parent, database);
+
+        // some heartbeats to build the history of the detector, then the cache is stalled for 30 intervals
+        database.expectNoMessage(Duration.ofMillis(10 * HEARTBEAT_INTERVAL));
+        blocker.tell((long) (30 * HEARTBEAT_INTERVAL), ActorRef.noSender());
+
+        // a failover would connect the cache to the database
+        database.expectNoMessage(Duration.ofMillis(60 * HEARTBEAT_INTERVAL));
+    }
+
+    @Test
+    public void silentParentIsSuspected() {
+        TestKit parent = new TestKit(system);
+        TestKit database = new TestKit(system);
+        l2Cache(parent, database);
+
+        database.expectMsgClass(Duration.ofMillis(60 * HEARTBEAT_INTERVAL), RequestConnectionMsg.class);
+    }
+
+    @Test
+    public void loadedParentIsNotSuspected() {
+        TestKit database = new TestKit(system);
+        TestKit sibling = new TestKit(system);
+        TestKit client = new TestKit(system);
+        List<LatencyConfiguration> latencies = List.of(new LatencyConfiguration(LatencyInjector.L2_L1, "constant", LATENCY, LATENCY));
+
+        CacheConfiguration l1Configuration = new CacheConfiguration(1, new ArrayList<>());
+        l1Configuration.setMailbox("priority");
+        ActorRef l1Cache = system.actorOf(Cache.props(0, "L1", database.getRef(), l1Configuration, latencies));
+
+        // a failover would ask the sibling L1 cache for its load
+        CacheConfiguration l2Configuration = new CacheConfiguration(1, List.of(new TimeoutConfiguration("read", 60)));
+        l2Configuration.setMailbox("priority");
+        l2Configuration.setHeartbeatInterval(HEARTBEAT_INTERVAL);
+        l2Configuration.setAcceptableHeartbeatPause(2 * HEARTBEAT_INTERVAL);
+        l2Configuration.setSiblingFailover(true);
+        ActorRef l2Cache = system.actorOf(Cache.props(1, "L2", l1Cache, database.getRef(), Set.of(l1Cache, sibling.getRef()),
+                l2Configuration, latencies));
+        l2Cache.tell(new StartInitMsg(), ActorRef.noSender());
+
+        // the database never answers: every read is forwarded to the L1 cache, which keeps a backlog of them
+        for (int i = 0; i < REQUESTS; i++) {
+            l2Cache.tell(new ReadRequestMsg(i, RequestPath.EMPTY, i), client.getRef());
+        }
+
+        sibling.expectNoMessage(Duration.ofMillis(60 * HEARTBEAT_INTERVAL));
+    }
+}
@@ -0,0 +1,63 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import it.unitn.ds1.Message.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// a database with a bounded mailbox flooded by a L1 cache (a probe) with latencies enabled:
+// the requests held back by the simulated latency count toward the capacity, so the flood is shed
+public class MailboxCapacityTest {
+
+    private static final int CAPACITY = 20;
+    private static final int REQUESTS = 200;
+    private static final int LATENCY = 300;
+
+    private ActorSystem system;
+
+    @Before
+    public void setup() {
+        system = ActorSystem.create("MailboxCapacityTest",
+                PriorityMailbox.config(Database.MAILBOX_ID, "default", CAPACITY).withFallback(ConfigFactory.load()));
+    }
+
+    @After
+    public void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Test
+    public void shedsRequestsHeldByLatencies() {
+        List<LatencyConfiguration> latencies = List.of(new LatencyConfiguration(LatencyInjector.L1_DB, "constant", LATENCY, LATENCY));
+        ActorRef database = system.actorOf(Database.props(0, new ArrayList<>(), latencies, "default", CAPACITY, 0));
+
+        TestKit l1Cache = new TestKit(system);
+        database.tell(new InitMsg(l1Cache.getRef(), "L1"), l1Cache.getRef());
+        for (int i = 0; i < REQUESTS; i++) {
+            database.tell(new ReadRequestMsg(i, RequestPath.EMPTY, i), l1Cache.getRef());
+        }
+
+        int overloaded = 0;
+        int answered = 0;
+        for (Object response : l1Cache.receiveN(REQUESTS, Duration.ofMillis(20L * LATENCY))) {
+            if (response instanceof OverloadedResponseMsg) {
+                overloaded++;
+            } else if (response instanceof ReadResponseMsg) {
+                answered++;
+            }
+        }
+        assertTrue("answered " + answered + " requests with capacity " + CAPACITY, answered <= CAPACITY);
+        assertEquals(REQUESTS, overloaded + answered);
+    }
+}
@@ -0,0 +1,200 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.Serializers;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+// every class of Message.Protocol, with a sample value in every field, goes through the serialization
+// extension of akka (so through MessageSerializer, bound in application.conf) and comes back equal
+// the java serialization used for the comparison is the JavaSerializer of akka, used before MessageSerializer
+public class MessageSerializerTest {
+
+    private static ActorSystem system;
+    private static ActorRef actor;
+    private static JavaSerializer javaSerializer;
+
+    @BeforeClass
+    public static void setup() {
+        // java serialization is disabled by default in akka 2.6, it is enabled here only for the comparison
+        system = ActorSystem.create("MessageSerializerTest", ConfigFactory
+                .parseString("akka.actor.allow-java-serialization = on\nakka.actor.warn-about-java-serializer-usage = off")
+                .withFallback(ConfigFactory.load()));
+        actor = new TestKit(system).getRef();
+        javaSerializer = new JavaSerializer((ExtendedActorSystem) system);
+    }
+
+    @AfterClass
+    public static void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Test
+    public void roundTripsEveryMessage() throws Exception {
+        for (Class<?> cls : protocolClasses()) {
+            Object message = sample(cls);
+            Object copy = roundTrip(message);
+            assertEquals(cls, copy.getClass());
+            for (Field field : fields(cls)) {
+                assertFieldEquals(cls.getSimpleName() + "." + field.getName(), field.get(message), field.get(copy));
+            }
+        }
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws Exception {
+        int compactTotal = 0;
+        int javaTotal = 0;
+        for (Class<?> cls : protocolClasses()) {
+            Object message = sample(cls);
+            int compact = serialize(message).length;
+            int java = javaSerialize(message).length;
+            assertTrue(cls.getSimpleName() + ": " + compact + " B, java serialization " + java + " B", compact < java);
+            compactTotal += compact;
+            javaTotal += java;
+        }
+        System.out.println("[MessageSerializerTest] total size of the " + protocolClasses().size() + " messages: "
+                + compactTotal + " B, java serialization " + javaTotal + " B");
+    }
+
+    // the serializer keeps no state between messages: the same message always gives the same bytes
+    @Test
+    public void serializesDeterministically() throws Exception {
+        for (Class<?> cls : protocolClasses()) {
+            Object message = sample(cls);
+            byte[] first = serialize(message);
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(cls.getSimpleName(), first, serialize(message));
+                assertEquals(cls, roundTrip(message).getClass());
+            }
+        }
+    }
+
+    // ----------SERIALIZATION----------
+
+    private static byte[] serialize(Object message) {
+        Serializer serializer = SerializationExtension.get(system).findSerializerFor(message);
+        assertTrue(message.getClass().getSimpleName() + " is not serialized by MessageSerializer", serializer instanceof MessageSerializer);
+        return serializer.toBinary(message);
+    }
+
+    private static Object roundTrip(Object message) {
+        Serialization serialization = SerializationExtension.get(system);
+        Serializer serializer = serialization.findSerializerFor(message);
+        byte[] bytes = serialize(message);
+        return serialization.deserialize(bytes, serializer.identifier(), Serializers.manifestFor(serializer, message)).get();
+    }
+
+    private static byte[] javaSerialize(Object message) {
+        return javaSerializer.toBinary(message);
+    }
+
+    // ----------SAMPLES----------
+
+    private static List<Class<?>> protocolClasses() {
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> cls : Message.class.getDeclaredClasses()) {
+            if (Message.Protocol.class.isAssignableFrom(cls) && !cls.isInterface()) {
+                classes.add(cls);
+            }
+        }
+        classes.sort(Comparator.comparing(Class::getSimpleName));
+        return classes;
+    }
+
+    private static List<Field> fields(Class<?> cls) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : cls.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            field.setAccessible(true);
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    // a message built with its smallest constructor, then a sample value in every field
+    private static Object sample(Class<?> cls) throws Exception {
+        Constructor<?>[] constructors = cls.getDeclaredConstructors();
+        Arrays.sort(constructors, Comparator.comparingInt(Constructor::getParameterCount));
+        Constructor<?> constructor = constructors[0];
+        constructor.setAccessible(true);
+        Object[] arguments = new Object[constructor.getParameterCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = sampleValue(constructor.getParameterTypes()[i], constructor.getGenericParameterTypes()[i]);
+        }
+        Object message = constructor.newInstance(arguments);
+        for (Field field : fields(cls)) {
+            field.set(message, sampleValue(field.getType(), field.getGenericType()));
+        }
+        return message;
+    }
+
+    private static Object sampleValue(Class<?> type, Type genericType) {
+        if (type == int.class) {
+            return -42;
+        }
+        if (type == long.class) {
+            return 1234567890123L;
+        }
+        if (type == boolean.class) {
+            return true;
+        }
+        if (type == String.class) {
+            return "sample";
+        }
+        if (type == int[].class) {
+            return new int[]{1, -2, 300000};
+        }
+        if (type == ActorRef.class) {
+            return actor;
+        }
+        if (type == RequestPath.class) {
+            return RequestPath.of(actor).push(actor);
+        }
+        Type argument = genericType instanceof ParameterizedType ? ((ParameterizedType) genericType).getActualTypeArguments()[0] : null;
+        if (type == Map.class) {
+            Map<Integer, Integer> map = new HashMap<>();
+            for (int key = 0; key < 20; key++) {
+                map.put(key, key * 7);
+            }
+            return map;
+        }
+        if (type == Set.class && argument == ActorRef.class) {
+            return new HashSet<>(Collections.singletonList(actor));
+        }
+        if (type == Set.class) {
+            return new HashSet<>(Arrays.asList(1, 2, 3));
+        }
+        throw new IllegalArgumentException("No sample value for " + genericType);
+    }
+
+    private static void assertFieldEquals(String name, Object expected, Object actual) {
+        if (expected instanceof RequestPath) {
+            assertTrue(name, actual instanceof RequestPath);
+            List<ActorRef> expectedActors = new ArrayList<>();
+            ((RequestPath) expected).forEach(expectedActors::add);
+            List<ActorRef> actualActors = new ArrayList<>();
+            ((RequestPath) actual).forEach(actualActors::add);
+            assertEquals(name, expectedActors, actualActors);
+        } else {
+            assertTrue(name + ": " + expected + " != " + actual, Objects.deepEquals(expected, actual));
+        }
+    }
+}
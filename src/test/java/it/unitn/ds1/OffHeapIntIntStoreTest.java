@@ -0,0 +1,72 @@
+package it.unitn.ds1;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// segments of at most 64 slots, so that a few thousand keys split them many times (and double the directory)
+// every operation is checked against a HashMap, removals exercise the backward shift deletion
+public class OffHeapIntIntStoreTest {
+
+    private static final int MAX_SEGMENT_SLOTS = 64;
+
+    @Test
+    public void splitsFullSegments() {
+        OffHeapIntIntStore store = new OffHeapIntIntStore(0, MAX_SEGMENT_SLOTS);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random rnd = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            int key = rnd.nextInt(20000) - 100;
+            assertEquals(orMissing(expected.put(key, i)), store.put(key, i));
+        }
+        assertTrue("segments: " + store.segmentCount(), store.segmentCount() > 64);
+        assertSameContent(expected, store);
+
+        for (int i = 0; i < 20000; i++) {
+            int key = rnd.nextInt(20000) - 100;
+            if (rnd.nextBoolean()) {
+                assertEquals(orMissing(expected.remove(key)), store.remove(key));
+            } else {
+                assertEquals(orMissing(expected.put(key, i)), store.put(key, i));
+            }
+        }
+        assertSameContent(expected, store);
+
+        store.clear();
+        assertTrue(store.isEmpty());
+        assertSameContent(new HashMap<>(), store);
+    }
+
+    @Test
+    public void keepsTheFreeKeyOutsideTheSegments() {
+        OffHeapIntIntStore store = new OffHeapIntIntStore(0, MAX_SEGMENT_SLOTS);
+        for (int key = 0; key < 1000; key++) {
+            store.put(key, key + 1);
+        }
+        assertEquals(1, store.get(0));
+        assertEquals(1, store.remove(0));
+        assertEquals(IntIntStore.MISSING, store.get(0));
+        assertEquals(999, store.size());
+    }
+
+    private static int orMissing(Integer value) {
+        return value == null ? IntIntStore.MISSING : value;
+    }
+
+    private static void assertSameContent(Map<Integer, Integer> expected, OffHeapIntIntStore store) {
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), store.get(entry.getKey()));
+            assertTrue(store.containsKey(entry.getKey()));
+        }
+        Map<Integer, Integer> visited = new HashMap<>();
+        store.forEach((key, value) -> assertNull("key visited twice: " + key, visited.put(key, value)));
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), store.keys().length);
+    }
+}
@@ -0,0 +1,60 @@
+package it.unitn.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import it.unitn.ds1.Message.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// a database with a priority mailbox and latencies enabled, a L1 cache (a probe) sends a backlog of requests
+// and then a protocol message: the protocol message is delayed on its own, it does not wait for the requests
+public class PriorityMailboxTest {
+
+    private static final int REQUESTS = 200;
+    private static final int LATENCY = 100;
+
+    private ActorSystem system;
+
+    @Before
+    public void setup() {
+        system = ActorSystem.create("PriorityMailboxTest",
+                PriorityMailbox.config(Database.MAILBOX_ID, "priority", 0).withFallback(ConfigFactory.load()));
+    }
+
+    @After
+    public void teardown() {
+        TestKit.shutdownActorSystem(system);
+        system = null;
+    }
+
+    @Test
+    public void protocolMessageOvertakesDelayedRequests() {
+        List<LatencyConfiguration> latencies = List.of(new LatencyConfiguration(LatencyInjector.L1_DB, "constant", LATENCY, LATENCY));
+        ActorRef database = system.actorOf(Database.props(0, new ArrayList<>(), latencies, "priority", 0, 0));
+
+        TestKit l1Cache = new TestKit(system);
+        database.tell(new InitMsg(l1Cache.getRef(), "L1"), l1Cache.getRef());
+        for (int i = 0; i < REQUESTS; i++) {
+            database.tell(new ReadRequestMsg(i, RequestPath.EMPTY, i), l1Cache.getRef());
+        }
+        database.tell(new HealthCheckRequestMsg(), l1Cache.getRef());
+
+        // read responses received before the health check response
+        int answeredBefore = 0;
+        Object response;
+        while (!((response = l1Cache.receiveOne(Duration.ofMillis(20L * LATENCY))) instanceof HealthCheckResponseMsg)) {
+            assertNotNull("health check response not received", response);
+            answeredBefore++;
+        }
+        assertTrue("health check answered after " + answeredBefore + " of " + REQUESTS + " requests", answeredBefore < REQUESTS / 2);
+    }
+}